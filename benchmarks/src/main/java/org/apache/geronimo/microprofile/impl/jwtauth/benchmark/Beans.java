@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.benchmark;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+
+// wires the beans without a CDI container to only measure the library,
+// configuration keys are the unprefixed ones (token.cache.active for instance)
+final class Beans implements AutoCloseable {
+    private final Map<String, String> configuration;
+    private final Map<Class<?>, Object> instances = new HashMap<>();
+    private final List<Object> creationOrder = new ArrayList<>();
+
+    Beans(final Map<String, String> configuration) {
+        this.configuration = configuration;
+    }
+
+    <T> T get(final Class<T> type) {
+        final Object existing = instances.get(type);
+        if (existing != null) {
+            return type.cast(existing);
+        }
+        try {
+            final Constructor<T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            final T instance = constructor.newInstance();
+            instances.put(type, instance);
+            for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                for (final Field field : current.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Inject.class)) {
+                        field.setAccessible(true);
+                        field.set(instance, resolve(field.getType()));
+                    }
+                }
+            }
+            invoke(instance, PostConstruct.class);
+            creationOrder.add(instance);
+            return instance;
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        Collections.reverse(creationOrder);
+        creationOrder.forEach(it -> invoke(it, PreDestroy.class));
+        creationOrder.clear();
+        instances.clear();
+    }
+
+    private Object resolve(final Class<?> type) {
+        if (type == GeronimoJwtAuthConfig.class) {
+            return (GeronimoJwtAuthConfig) configuration::getOrDefault;
+        }
+        if (type == Instance.class) { // no custom validation stage
+            return Proxy.newProxyInstance(Beans.class.getClassLoader(), new Class<?>[]{Instance.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "iterator":
+                        return Collections.emptyIterator();
+                    case "forEach":
+                        return null;
+                    case "isUnsatisfied":
+                        return true;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+        return get(type);
+    }
+
+    private void invoke(final Object instance, final Class<? extends java.lang.annotation.Annotation> marker) {
+        for (Class<?> current = instance.getClass(); current != Object.class; current = current.getSuperclass()) {
+            for (final Method method : current.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(marker)) {
+                    try {
+                        method.setAccessible(true);
+                        method.invoke(instance);
+                    } catch (final ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+    }
+}
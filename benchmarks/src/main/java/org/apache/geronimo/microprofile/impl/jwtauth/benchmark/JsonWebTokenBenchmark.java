@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.benchmark;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.jwt.JwtParser;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class JsonWebTokenBenchmark {
+    @Param({"5", "50"})
+    private int claims;
+
+    @Param({"1", "20"})
+    private int groups;
+
+    @Param({"false", "true"})
+    private boolean lazy;
+
+    private Beans beans;
+    private JsonWebToken token;
+
+    @Setup
+    public void setup() {
+        final Tokens tokens = new Tokens();
+        final Map<String, String> configuration = tokens.configuration();
+        configuration.put("claims.lazy", Boolean.toString(lazy));
+        beans = new Beans(configuration);
+        token = beans.get(JwtParser.class).parse(tokens.create("HS256", tokens.payload(claims, groups, 0)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        beans.close();
+    }
+
+    @Benchmark
+    public Object getClaim() {
+        return token.getClaim("claim0");
+    }
+
+    @Benchmark
+    public Set<String> getGroups() {
+        return token.getGroups();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.jwt.JwtParser;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class JwtParserBenchmark {
+    @Param({"RS256", "ES256", "HS256", "EdDSA"})
+    private String alg;
+
+    @Param({"5", "50"})
+    private int claims;
+
+    @Param({"1", "20"})
+    private int groups;
+
+    // extra bytes in the payload to check how the token size impacts the parsing
+    @Param({"0", "2048"})
+    private int padding;
+
+    private Beans beans;
+    private JwtParser parser;
+    private String token;
+
+    @Setup
+    public void setup() {
+        final Tokens tokens = new Tokens();
+        beans = new Beans(tokens.configuration());
+        parser = beans.get(JwtParser.class);
+        token = tokens.create(alg, tokens.payload(claims, groups, padding));
+        parser.parse(token); // fail fast if the setup is wrong
+    }
+
+    @TearDown
+    public void tearDown() {
+        beans.close();
+    }
+
+    @Benchmark
+    public JsonWebToken parse() {
+        return parser.parse(token);
+    }
+}
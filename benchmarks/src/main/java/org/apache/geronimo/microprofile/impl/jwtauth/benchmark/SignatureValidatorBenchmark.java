@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.jwt.KidMapper;
+import org.apache.geronimo.microprofile.impl.jwtauth.jwt.SignatureValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SignatureValidatorBenchmark {
+    @Param({"RS256", "ES256", "HS256", "EdDSA"})
+    private String alg;
+
+    private Beans beans;
+    private SignatureValidator validator;
+    private String key;
+    private ByteBuffer signingInput;
+    private byte[] signature;
+
+    @Setup
+    public void setup() {
+        final Tokens tokens = new Tokens();
+        beans = new Beans(tokens.configuration());
+        validator = beans.get(SignatureValidator.class);
+        key = beans.get(KidMapper.class).loadKey(alg);
+        final byte[] input = tokens.create(alg, tokens.payload(5, 1, 0)).getBytes(UTF_8);
+        signingInput = ByteBuffer.wrap(input);
+        signature = tokens.sign(alg, input);
+    }
+
+    @TearDown
+    public void tearDown() {
+        beans.close();
+    }
+
+    // the verifier of the kid is reused
+    @Benchmark
+    public void verifyWithKid() {
+        validator.verifyWithKid(alg, alg, signingInput.duplicate(), signature, signature.length);
+    }
+
+    // the key is parsed (or read from the public key cache) and the JCA instances are created for each verification
+    @Benchmark
+    public void verifySignature() {
+        validator.verifySignature(alg, key, signingInput.duplicate(), signature, signature.length);
+    }
+}
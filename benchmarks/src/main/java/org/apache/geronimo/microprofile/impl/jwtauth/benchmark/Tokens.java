@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+// keys and tokens of the benchmarks, the kid of a token is its algorithm
+final class Tokens {
+    static final String ISSUER = "https://benchmark.geronimo.apache.org";
+
+    private static final String HMAC_SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+
+    private final Map<String, KeyPair> keyPairs = new HashMap<>();
+
+    Tokens() {
+        try {
+            final KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+            rsa.initialize(2048);
+            keyPairs.put("RS256", rsa.generateKeyPair());
+
+            final KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+            ec.initialize(new ECGenParameterSpec("secp256r1"));
+            keyPairs.put("ES256", ec.generateKeyPair());
+
+            keyPairs.put("EdDSA", KeyPairGenerator.getInstance("Ed25519").generateKeyPair()); // java 15+
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Map<String, String> configuration() {
+        final StringBuilder mapping = new StringBuilder("HS256=" + HMAC_SECRET + "\n");
+        keyPairs.forEach((alg, keys) -> mapping.append(alg).append('=').append(pem(keys)).append('\n'));
+
+        final Map<String, String> configuration = new HashMap<>();
+        configuration.put("kids.key.mapping", mapping.toString());
+        configuration.put("issuer.default", ISSUER);
+        configuration.put("header.alg.supported", "RS256,ES256,HS256,EdDSA");
+        return configuration;
+    }
+
+    JsonObject payload(final int claims, final int groups, final int padding) {
+        final long now = System.currentTimeMillis() / 1000;
+        final JsonObjectBuilder builder = Json.createObjectBuilder()
+                .add("iss", ISSUER)
+                .add("sub", "benchmark")
+                .add("upn", "benchmark@geronimo.apache.org")
+                .add("iat", now)
+                .add("exp", now + 24 * 3600);
+        final JsonArrayBuilder groupsBuilder = Json.createArrayBuilder();
+        for (int i = 0; i < groups; i++) {
+            groupsBuilder.add("group" + i);
+        }
+        builder.add("groups", groupsBuilder);
+        for (int i = 0; i < claims; i++) {
+            builder.add("claim" + i, "value" + i);
+        }
+        if (padding > 0) {
+            final StringBuilder value = new StringBuilder(padding);
+            while (value.length() < padding) {
+                value.append('x');
+            }
+            builder.add("padding", value.toString());
+        }
+        return builder.build();
+    }
+
+    String create(final String alg, final JsonObject payload) {
+        final String signingInput = base64(Json.createObjectBuilder()
+                .add("alg", alg).add("kid", alg).add("typ", "JWT").build().toString().getBytes(UTF_8)) +
+                '.' + base64(payload.toString().getBytes(UTF_8));
+        return signingInput + '.' + base64(sign(alg, signingInput.getBytes(UTF_8)));
+    }
+
+    byte[] sign(final String alg, final byte[] signingInput) {
+        try {
+            if ("HS256".equals(alg)) {
+                final Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(HMAC_SECRET.getBytes(UTF_8), "HmacSHA256"));
+                return mac.doFinal(signingInput);
+            }
+            final Signature signature = Signature.getInstance(signatureAlgorithm(alg));
+            final PrivateKey key = keyPairs.get(alg).getPrivate();
+            signature.initSign(key);
+            signature.update(signingInput);
+            return signature.sign();
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String signatureAlgorithm(final String alg) {
+        switch (alg) {
+            case "RS256":
+                return "SHA256withRSA";
+            case "ES256":
+                return "SHA256withECDSAinP1363Format"; // JWS format (R|S)
+            case "EdDSA":
+                return "Ed25519";
+            default:
+                throw new IllegalArgumentException(alg);
+        }
+    }
+
+    private static String pem(final KeyPair keys) {
+        return "-----BEGIN PUBLIC KEY-----" + Base64.getEncoder().encodeToString(keys.getPublic().getEncoded()) + "-----END PUBLIC KEY-----";
+    }
+
+    private static String base64(final byte[] value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+    }
+}
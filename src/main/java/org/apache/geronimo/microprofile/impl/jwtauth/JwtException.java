@@ -18,13 +18,24 @@ package org.apache.geronimo.microprofile.impl.jwtauth;
 
 public class JwtException extends RuntimeException {
     private final int status;
+    private final Rejection rejection;
 
     public JwtException(final String msg, final int status) {
+        this(msg, status, Rejection.OTHER);
+    }
+
+    public JwtException(final String msg, final int status, final Rejection rejection) {
         super(msg);
         this.status = status;
+        this.rejection = rejection;
     }
 
     public int getStatus() {
         return status;
     }
+
+    // why the token was rejected, set where the error is detected
+    public Rejection getRejection() {
+        return rejection;
+    }
 }
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth;
+
+// why a token was rejected, carried by the JwtException
+public enum Rejection {
+    MALFORMED(false),
+    ALGORITHM(false),
+    TYP(false),
+    EXPIRED(false),
+    NOT_YET_VALID(true), // clock skew
+    ISSUER(false),
+    AUDIENCE(false),
+    UNKNOWN_KID(true), // can be a key rotation
+    KEY(false), // the resolved key can't verify the token (algorithm mismatch, invalid or unsupported key)
+    SIGNATURE(false),
+    UNAVAILABLE(true), // the token could not be verified (JWKS download failure for ex), not a rejection by the parser
+    OTHER(false);
+
+    private final boolean transientRejection;
+
+    Rejection(final boolean transientRejection) {
+        this.transientRejection = transientRejection;
+    }
+
+    // true if the same token can be accepted soon
+    public boolean isTransient() {
+        return transientRejection;
+    }
+}
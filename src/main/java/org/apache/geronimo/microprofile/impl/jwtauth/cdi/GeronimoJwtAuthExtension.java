@@ -63,6 +63,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
 import org.apache.geronimo.microprofile.impl.jwtauth.jwt.ContextualJsonWebToken;
+import org.apache.geronimo.microprofile.impl.jwtauth.jwt.StandardClaims;
 import org.apache.geronimo.microprofile.impl.jwtauth.servlet.TokenAccessor;
 import org.apache.geronimo.microprofile.impl.jwtauth.servlet.JwtRequest;
 import org.eclipse.microprofile.jwt.Claim;
@@ -279,6 +280,20 @@ public class GeronimoJwtAuthExtension implements Extension {
         }
     }
 
+    // converts JsonWebToken#getClaim(claimName) to the injected type
+    static Function<Object, Object> claimTransformer(final String claimName, final Type type) {
+        if (StandardClaims.find(claimName) != null) { // already typed by the token
+            return identity();
+        }
+        if (type == String.class) {
+            return val -> val == null ? null : JsonString.class.cast(val).getString();
+        }
+        if (type == Long.class) {
+            return val -> val == null ? null : JsonNumber.class.cast(val).longValue();
+        }
+        return identity();
+    }
+
     @FunctionalInterface
     public interface ServletRunnable {
         void run() throws ServletException, IOException;
@@ -297,21 +312,8 @@ public class GeronimoJwtAuthExtension implements Extension {
             this.claims = claims;
             this.type = type;
 
-            Function<Object, Object> transformer;
-            try {
-                Claims.valueOf(getClaimName(name, claims));
-                transformer = identity();
-            } catch (final IllegalArgumentException iae) {
-                if (type == String.class) {
-                    transformer = val -> val == null ? null : JsonString.class.cast(val).getString();
-                } else if (type == Long.class) {
-                    transformer = val -> val == null ? null : JsonNumber.class.cast(val).longValue();
-                } else {
-                    transformer = identity();
-                }
-            }
-            this.transformer = transformer;
             this.runtimeName = getClaimName(name, claims);
+            this.transformer = claimTransformer(runtimeName, type);
 
             {
                 int result = name.hashCode();
@@ -31,6 +31,9 @@ import org.apache.geronimo.microprofile.impl.jwtauth.servlet.JwtRequest;
 @Dependent
 @Priority(Priorities.AUTHENTICATION - 1)
 public class JAXRSRequestForwarder implements ContainerRequestFilter {
+    // the container security context, it delegates to JwtRequest#isUserInRole until a filter replaces it
+    static final String SECURITY_CONTEXT = JAXRSRequestForwarder.class.getName() + ".securityContext";
+
     @Context
     private HttpServletRequest request;
 
@@ -44,5 +47,6 @@ public class JAXRSRequestForwarder implements ContainerRequestFilter {
         if (value != null) {
             jwtRequest.setAttribute(JAXRSRequestForwarder.class.getName() + ".header", value);
         }
+        requestContext.setProperty(SECURITY_CONTEXT, requestContext.getSecurityContext());
     }
 }
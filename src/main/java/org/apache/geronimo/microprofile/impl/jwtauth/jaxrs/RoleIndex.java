@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jaxrs;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.jwt.RoleIndexedToken;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+// roles of the @RolesAllowed endpoints get a dense id at deployment, endpoints and tokens are then bitsets
+// so a role check is a single intersects whatever the number of roles and groups
+@ApplicationScoped
+public class RoleIndex {
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    public synchronized BitSet compile(final Collection<String> roles) {
+        final BitSet bits = new BitSet();
+        for (final String role : roles) {
+            bits.set(ids.computeIfAbsent(role, k -> ids.size()));
+        }
+        return bits;
+    }
+
+    // the token keeps its bits until roles are added (another application deployed), other tokens are indexed each time
+    public boolean isInRole(final JsonWebToken token, final BitSet roles) {
+        final BitSet groups = RoleIndexedToken.class.isInstance(token) ?
+                RoleIndexedToken.class.cast(token).getGroupBits(ids.size(), this::toBits) :
+                toBits(token.getGroups());
+        return groups.intersects(roles);
+    }
+
+    private BitSet toBits(final Set<String> groups) {
+        final BitSet bits = new BitSet();
+        if (groups != null) {
+            for (final String group : groups) {
+                final Integer id = ids.get(group);
+                if (id != null) { // a group no endpoint requires
+                    bits.set(id);
+                }
+            }
+        }
+        return bits;
+    }
+}
@@ -47,6 +47,9 @@ public class RolesAllowedFeature implements DynamicFeature {
     @Inject
     private GroupMapper mapper;
 
+    @Inject
+    private RoleIndex roleIndex;
+
     @Override
     public void configure(final ResourceInfo resourceInfo, final FeatureContext featureContext) {
         final Map<Class<?>, Annotation> methodAnnotations = collectConfig(resourceInfo.getResourceMethod());
@@ -78,7 +81,7 @@ public class RolesAllowedFeature implements DynamicFeature {
                 Stream.of(RolesAllowed.class.cast(ofNullable(methodAnnotations.get(RolesAllowed.class)).orElseGet(() -> classAnnotations.get(RolesAllowed.class))).value())
                         .flatMap(it -> mapper.map(it).stream())
                         .collect(toSet());
-        featureContext.register(new RolesAllowedRequestFilter(denyAll, permitAll, roles));
+        featureContext.register(new RolesAllowedRequestFilter(denyAll, permitAll, roles, roleIndex));
     }
 
     private Map<Class<?>, Annotation> collectConfig(final AnnotatedElement annotatedElement) {
@@ -19,6 +19,7 @@ package org.apache.geronimo.microprofile.impl.jwtauth.jaxrs;
 import static java.util.Collections.emptyMap;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collection;
 
 import javax.json.Json;
@@ -27,6 +28,8 @@ import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 
+import org.apache.geronimo.microprofile.impl.jwtauth.servlet.JwtRequest;
+
 class RolesAllowedRequestFilter implements ContainerRequestFilter {
     private final Response forbidden = Response
             .status(Response.Status.FORBIDDEN)
@@ -35,12 +38,17 @@ class RolesAllowedRequestFilter implements ContainerRequestFilter {
 
     private final boolean denyAll;
     private final boolean permitAll;
-    private final Collection<String> roles;
+    private final String[] roles;
+    private final BitSet roleBits;
+    private final RoleIndex index;
 
-    RolesAllowedRequestFilter(final boolean denyAll, final boolean permitAll, final Collection<String> roles) {
+    RolesAllowedRequestFilter(final boolean denyAll, final boolean permitAll, final Collection<String> roles,
+                              final RoleIndex index) {
         this.denyAll = denyAll;
         this.permitAll = permitAll;
-        this.roles = roles;
+        this.roles = roles.toArray(new String[0]);
+        this.roleBits = index.compile(roles);
+        this.index = index;
     }
 
     @Override
@@ -49,9 +57,26 @@ class RolesAllowedRequestFilter implements ContainerRequestFilter {
             context.abortWith(forbidden);
         } else if (!permitAll) {
             final SecurityContext securityContext = context.getSecurityContext();
-            if (securityContext == null || roles.stream().noneMatch(securityContext::isUserInRole)) {
+            if (securityContext == null || !isInRole(context, securityContext)) {
                 context.abortWith(forbidden);
             }
         }
     }
+
+    // the container context of a JwtRequest checks the token groups so the bitsets give the same answer,
+    // any other context (replaced by another filter for instance) can map the roles itself so it is always asked
+    private boolean isInRole(final ContainerRequestContext context, final SecurityContext securityContext) {
+        if (securityContext == context.getProperty(JAXRSRequestForwarder.SECURITY_CONTEXT)) {
+            final Object request = context.getProperty(JwtRequest.class.getName());
+            if (JwtRequest.class.isInstance(request)) {
+                return index.isInRole(JwtRequest.class.cast(request).getToken(), roleBits);
+            }
+        }
+        for (final String role : roles) {
+            if (securityContext.isUserInRole(role)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jfr;
+
+import javax.enterprise.inject.Vetoed;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Vetoed
+@Name("org.apache.geronimo.jwtauth.DateCheck")
+@Label("JWT Date Check")
+@Category({"Geronimo", "JWT Auth"})
+@Description("Validation of the exp/iat or nbf claims")
+@StackTrace(false)
+public final class DateCheckEvent extends Event {
+    @Label("Check")
+    @Description("exp/iat or nbf")
+    private String check;
+
+    @Label("Outcome")
+    @Description("VALID or the rejection reason")
+    private String outcome;
+
+    public void complete(final String check, final String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.check = check;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
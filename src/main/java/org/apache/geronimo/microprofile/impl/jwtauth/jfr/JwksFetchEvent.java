@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jfr;
+
+import javax.enterprise.inject.Vetoed;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// begins in the thread requesting the download and is committed by the one processing the response
+@Vetoed
+@Name("org.apache.geronimo.jwtauth.JwksFetch")
+@Label("JWKS Fetch")
+@Category({"Geronimo", "JWT Auth"})
+@Description("Download and parsing of the JWKS")
+@StackTrace(false)
+public final class JwksFetchEvent extends Event {
+    @Label("URL")
+    private String url;
+
+    @Label("Status")
+    @Description("HTTP status, -1 if no response was received")
+    private int status;
+
+    @Label("Key Count")
+    @Description("Number of usable keys, -1 on failure")
+    private int keyCount;
+
+    @Label("Error")
+    private String error;
+
+    public void complete(final String url, final int status, final int keyCount, final String error) {
+        end();
+        if (shouldCommit()) {
+            this.url = url;
+            this.status = status;
+            this.keyCount = keyCount;
+            this.error = error;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jfr;
+
+import javax.enterprise.inject.Vetoed;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Vetoed
+@Name("org.apache.geronimo.jwtauth.KeyResolution")
+@Label("JWT Key Resolution")
+@Category({"Geronimo", "JWT Auth"})
+@Description("Lookup of the key of a kid")
+@StackTrace(false)
+public final class KeyResolutionEvent extends Event {
+    @Label("Key Id")
+    private String kid;
+
+    @Label("Source")
+    @Description("hit (already known), file, classpath, jwks, default or none (the kid is the key)")
+    private String source;
+
+    @Label("JWKS Wait")
+    @Description("Did the lookup wait for the initial JWKS download")
+    private boolean jwksWait;
+
+    public void complete(final String kid, final String source, final boolean jwksWait) {
+        end();
+        if (shouldCommit()) {
+            this.kid = kid;
+            this.source = source;
+            this.jwksWait = jwksWait;
+            commit();
+        }
+    }
+}
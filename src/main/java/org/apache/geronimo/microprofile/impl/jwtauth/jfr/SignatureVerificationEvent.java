@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jfr;
+
+import javax.enterprise.inject.Vetoed;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Vetoed
+@Name("org.apache.geronimo.jwtauth.SignatureVerification")
+@Label("JWT Signature Verification")
+@Category({"Geronimo", "JWT Auth"})
+@Description("Verification of the signature of a token, the key resolution is not included")
+@StackTrace(false)
+public final class SignatureVerificationEvent extends Event {
+    @Label("Algorithm")
+    private String alg;
+
+    @Label("Key Id")
+    private String kid;
+
+    @Label("Key Size")
+    @Description("In bits, -1 if unknown")
+    private int keySize;
+
+    @Label("Valid")
+    private boolean valid;
+
+    public void complete(final String alg, final String kid, final int keySize, final boolean valid) {
+        end();
+        if (shouldCommit()) {
+            this.alg = alg;
+            this.kid = kid;
+            this.keySize = keySize;
+            this.valid = valid;
+            commit();
+        }
+    }
+}
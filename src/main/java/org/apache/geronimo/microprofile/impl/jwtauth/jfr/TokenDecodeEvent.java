@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jfr;
+
+import javax.enterprise.inject.Vetoed;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Vetoed
+@Name("org.apache.geronimo.jwtauth.TokenDecode")
+@Label("JWT Decode")
+@Category({"Geronimo", "JWT Auth"})
+@Description("Base64 and JSON decoding of the header or the payload of a token")
+@StackTrace(false)
+public final class TokenDecodeEvent extends Event {
+    @Label("Part")
+    @Description("header or payload")
+    private String part;
+
+    @Label("Encoded Length")
+    @DataAmount
+    private int length;
+
+    public void complete(final String part, final int length) {
+        end();
+        if (shouldCommit()) {
+            this.part = part;
+            this.length = length;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jfr;
+
+import javax.enterprise.inject.Vetoed;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// the whole validation of a token (JwtParser#parse), the other events are nested in it
+@Vetoed
+@Name("org.apache.geronimo.jwtauth.TokenVerification")
+@Label("JWT Verification")
+@Category({"Geronimo", "JWT Auth"})
+@Description("Decoding and validation of a token")
+@StackTrace(false)
+public final class TokenVerificationEvent extends Event {
+    @Label("Algorithm")
+    private String alg;
+
+    @Label("Key Id")
+    private String kid;
+
+    @Label("Token Length")
+    private int tokenLength;
+
+    @Label("Outcome")
+    @Description("VALID or the rejection reason")
+    private String outcome;
+
+    public void complete(final String alg, final String kid, final int tokenLength, final String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.alg = alg;
+            this.kid = kid;
+            this.tokenLength = tokenLength;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
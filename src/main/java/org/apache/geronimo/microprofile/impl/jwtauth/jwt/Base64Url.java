@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.util.Arrays;
+
+import javax.enterprise.inject.Vetoed;
+
+// java.util.Base64 only decodes whole arrays/strings, this one decodes a slice of a token in a caller buffer
+@Vetoed
+final class Base64Url {
+    private static final byte[] ALPHABET = new byte[128];
+
+    static {
+        Arrays.fill(ALPHABET, (byte) -1);
+        for (int i = 0; i < 26; i++) {
+            ALPHABET['A' + i] = (byte) i;
+            ALPHABET['a' + i] = (byte) (26 + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            ALPHABET['0' + i] = (byte) (52 + i);
+        }
+        ALPHABET['-'] = 62;
+        ALPHABET['_'] = 63;
+    }
+
+    private Base64Url() {
+        // no-op
+    }
+
+    static int maxDecodedLength(final int encodedLength) {
+        return encodedLength * 3 / 4;
+    }
+
+    // returns the number of decoded bytes or -1 if the segment is not valid base64url
+    static int decode(final CharSequence src, final int from, final int to, final byte[] dst) {
+        int end = to;
+        while (end > from && src.charAt(end - 1) == '=') {
+            end--;
+        }
+
+        int buffer = 0;
+        int bits = 0;
+        int out = 0;
+        for (int i = from; i < end; i++) {
+            final char c = src.charAt(i);
+            final int value = c < ALPHABET.length ? ALPHABET[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            buffer = ((buffer << 6) | value) & 0xFFFF;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                dst[out++] = (byte) (buffer >> bits);
+            }
+        }
+        if (bits >= 6) { // a single trailing character can't encode a byte
+            return -1;
+        }
+        return out;
+    }
+}
@@ -27,7 +27,9 @@ import javax.json.JsonNumber;
 import javax.json.JsonObject;
 
 import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
 import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+import org.apache.geronimo.microprofile.impl.jwtauth.jfr.DateCheckEvent;
 import org.eclipse.microprofile.jwt.Claims;
 import org.eclipse.microprofile.jwt.config.Names;
 
@@ -50,25 +52,48 @@ public class DateValidator {
     }
 
     public void checkInterval(final JsonObject payload) {
+        final DateCheckEvent event = new DateCheckEvent();
+        event.begin();
+        try {
+            doCheckInterval(payload);
+        } catch (final JwtException je) {
+            event.complete("exp/iat", je.getRejection().name());
+            throw je;
+        }
+        event.complete("exp/iat", "VALID");
+    }
+
+    public void checkNotBefore(final JsonObject payload) {
+        final DateCheckEvent event = new DateCheckEvent();
+        event.begin();
+        final JsonNumber nbf = payload.getJsonNumber(Claims.nbf.name());
+        if (nbf != null && nbf.longValue() > now() + tolerance) {
+            event.complete("nbf", Rejection.NOT_YET_VALID.name());
+            throw new JwtException("Token not yet valid", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.NOT_YET_VALID);
+        }
+        event.complete("nbf", "VALID");
+    }
+
+    private void doCheckInterval(final JsonObject payload) {
         long now = -1;
 
         final JsonNumber exp = payload.getJsonNumber(Claims.exp.name());
         if (exp == null) {
             if (expirationMandatory) {
-                throw new JwtException("No exp in the JWT", HttpURLConnection.HTTP_UNAUTHORIZED);
+                throw new JwtException("No exp in the JWT", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.MALFORMED);
             }
         } else {
             final long expValue = exp.longValue();
             now = now();
             if (expValue < now - tolerance) {
-                throw new JwtException("Token expired", HttpURLConnection.HTTP_UNAUTHORIZED);
+                throw new JwtException("Token expired", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.EXPIRED);
             }
         }
 
         final JsonNumber iat = payload.getJsonNumber(Claims.iat.name());
         if (iat == null) {
             if (issuedAtTimeMandatory) {
-                throw new JwtException("No iat in the JWT", HttpURLConnection.HTTP_UNAUTHORIZED);
+                throw new JwtException("No iat in the JWT", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.MALFORMED);
             }
         } else {
             final long iatValue = iat.longValue();
@@ -76,11 +101,15 @@ public class DateValidator {
                 now = now();
             }
             if (iatValue > now + tolerance) {
-                throw new JwtException("Token issued after current time", HttpURLConnection.HTTP_UNAUTHORIZED);
+                throw new JwtException("Token issued after current time", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.NOT_YET_VALID);
             }
         }
     }
 
+    public long getTolerance() {
+        return tolerance;
+    }
+
     private long now() {
         return System.currentTimeMillis() / 1000;
     }
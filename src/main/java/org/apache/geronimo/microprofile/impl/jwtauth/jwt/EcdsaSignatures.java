@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import javax.enterprise.inject.Vetoed;
+
+// JWS ECDSA signatures are the concatenation of R and S (fixed length), JCA ECDSA signatures are DER sequences
+@Vetoed
+final class EcdsaSignatures {
+    private EcdsaSignatures() {
+        // no-op
+    }
+
+    // sequence header (3 bytes max for P-521) + 2 integers (tag, length, sign byte)
+    static int maxDerLength(final int componentLength) {
+        return 3 + 2 * (3 + componentLength);
+    }
+
+    // returns the DER length written in der or -1 if the JOSE signature does not have the expected length
+    static int toDer(final byte[] jose, final int joseLength, final int componentLength, final byte[] der) {
+        if (joseLength != 2 * componentLength) {
+            return -1;
+        }
+
+        final int rStart = firstSignificantByte(jose, 0, componentLength);
+        final int rLength = componentLength - rStart;
+        final int rPadding = (jose[rStart] & 0x80) != 0 ? 1 : 0; // DER integers are signed
+        final int sStart = firstSignificantByte(jose, componentLength, joseLength);
+        final int sLength = joseLength - sStart;
+        final int sPadding = (jose[sStart] & 0x80) != 0 ? 1 : 0;
+        final int sequenceLength = 2 + rPadding + rLength + 2 + sPadding + sLength;
+
+        int offset = 0;
+        der[offset++] = 0x30;
+        if (sequenceLength >= 0x80) {
+            der[offset++] = (byte) 0x81;
+        }
+        der[offset++] = (byte) sequenceLength;
+        offset = writeInteger(jose, rStart, rLength, rPadding, der, offset);
+        return writeInteger(jose, sStart, sLength, sPadding, der, offset);
+    }
+
+    // keeps the last byte even if zero since an integer has at least one byte
+    private static int firstSignificantByte(final byte[] jose, final int from, final int to) {
+        int start = from;
+        while (start < to - 1 && jose[start] == 0) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int writeInteger(final byte[] jose, final int start, final int length, final int padding,
+                                    final byte[] der, final int from) {
+        int offset = from;
+        der[offset++] = 0x02;
+        der[offset++] = (byte) (length + padding);
+        if (padding == 1) {
+            der[offset++] = 0;
+        }
+        System.arraycopy(jose, start, der, offset, length);
+        return offset + length;
+    }
+}
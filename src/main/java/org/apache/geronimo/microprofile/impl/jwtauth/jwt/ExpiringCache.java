@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.enterprise.inject.Vetoed;
+
+// reads are lock free (ConcurrentHashMap), only one writer at a time makes room when the cache is full
+// and other writers just skip caching their value meanwhile - we never block a request to cache something
+@Vetoed
+final class ExpiringCache<K, V> {
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final int maxSize;
+    private final long maxWeight;
+
+    ExpiringCache(final int maxSize, final long maxWeight) {
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+    }
+
+    V get(final K key, final long now) {
+        final Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    void put(final K key, final V value, final long expiresAt, final long entryWeight, final long now) {
+        if (expiresAt <= now || maxSize <= 0 || entryWeight > maxWeight) {
+            return;
+        }
+        if ((entries.size() >= maxSize || weight.get() + entryWeight > maxWeight) && !makeRoom(entryWeight, now)) {
+            return;
+        }
+        final Entry<V> entry = new Entry<>(value, expiresAt, entryWeight);
+        final Entry<V> previous = entries.put(key, entry);
+        weight.addAndGet(previous == null ? entryWeight : entryWeight - previous.weight);
+    }
+
+    void clear() {
+        entries.clear();
+        weight.set(0);
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getWeight() {
+        return weight.get();
+    }
+
+    private boolean makeRoom(final long entryWeight, final long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            // drop expired entries first
+            final Iterator<Map.Entry<K, Entry<V>>> expired = entries.entrySet().iterator();
+            while (expired.hasNext()) {
+                final Map.Entry<K, Entry<V>> next = expired.next();
+                if (next.getValue().expiresAt <= now) {
+                    remove(next.getKey(), next.getValue());
+                }
+            }
+
+            // then arbitrary ones (hash order), we evict 10% more than needed to not redo it for next put
+            final int targetSize = Math.max(0, maxSize - 1 - maxSize / 10);
+            final long targetWeight = maxWeight - entryWeight - maxWeight / 10;
+            final Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext() && (entries.size() > targetSize || weight.get() > targetWeight)) {
+                final Map.Entry<K, Entry<V>> next = iterator.next();
+                remove(next.getKey(), next.getValue());
+            }
+            return entries.size() < maxSize && weight.get() + entryWeight <= maxWeight;
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void remove(final K key, final Entry<V> entry) {
+        if (entries.remove(key, entry)) {
+            weight.addAndGet(-entry.weight);
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+        private final long weight;
+
+        private Entry(final V value, final long expiresAt, final long weight) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+    }
+}
@@ -16,27 +16,60 @@
  */
 package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
 
+import static java.util.Collections.emptySet;
 import static java.util.stream.Collectors.toSet;
 
+import java.io.ByteArrayInputStream;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import javax.json.JsonArray;
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
 import javax.json.JsonString;
 import javax.json.JsonValue;
 
 import org.eclipse.microprofile.jwt.Claims;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
-class GeronimoJsonWebToken implements JsonWebToken {
-    private final JsonObject delegate;
+class GeronimoJsonWebToken implements JsonWebToken, RoleIndexedToken {
+    // standard claim -> how it is read, custom claims (not found by StandardClaims) are returned as JSON values
+    private static final Map<Claims, ClaimReader> READERS = new EnumMap<>(Claims.class);
+
+    static {
+        for (final Claims claim : Claims.values()) {
+            READERS.put(claim, reader(claim));
+        }
+    }
+    private static final Object NO_GROUPS = new Object();
+
     private final String raw;
+    private final JsonObject claims; // claims read during the validation, all of them when not lazy
+    private final JsonReaderFactory readerFactory;
+    private byte[] payload; // decoded payload until it is read (lazy mode)
+    private volatile JsonObject delegate;
+    private volatile Object groups; // computed once, role checks read it for each allowed role
+    private volatile GroupBits groupBits;
 
     GeronimoJsonWebToken(final String raw, final JsonObject delegate) {
         this.raw = raw;
+        this.claims = delegate;
         this.delegate = delegate;
+        this.readerFactory = null;
+    }
+
+    GeronimoJsonWebToken(final String raw, final JsonObject claims, final byte[] payload,
+                         final JsonReaderFactory readerFactory) {
+        this.raw = raw;
+        this.claims = claims;
+        this.payload = payload;
+        this.readerFactory = readerFactory;
     }
 
     @Override
@@ -44,47 +77,117 @@ class GeronimoJsonWebToken implements JsonWebToken {
         return getClaim(Claims.upn.name());
     }
 
+    @Override
+    public Set<String> getGroups() {
+        final Object value = groups();
+        return Set.class.isInstance(value) ? (Set<String>) value : emptySet();
+    }
+
+    @Override
+    public BitSet getGroupBits(final int indexVersion, final Function<Set<String>, BitSet> indexer) {
+        GroupBits current = groupBits;
+        if (current == null || current.indexVersion != indexVersion) { // concurrent calls compute the same bits
+            current = new GroupBits(indexVersion, indexer.apply(getGroups()));
+            groupBits = current;
+        }
+        return current.bits;
+    }
+
     @Override
     public Set<String> getClaimNames() {
-        return delegate.keySet();
+        return json().keySet();
     }
 
     @Override
     public <T> T getClaim(final String claimName) {
-        try {
-            final Claims claim = Claims.valueOf(claimName);
-            if (claim == Claims.raw_token) {
-                return (T) raw;
-            }
-            if (claim.getType() == String.class) {
-                return (T) delegate.getString(claimName);
-            }
-            if (claim.getType() == Long.class) {
-                return (T) Long.valueOf(delegate.getJsonNumber(claimName).longValue());
-            }
-            if (claim.getType() == JsonObject.class) {
-                return (T) delegate.getJsonObject(claimName);
+        final Claims claim = StandardClaims.find(claimName);
+        final ClaimReader reader = claim == null ? null : READERS.get(claim);
+        return (T) (reader == null ? json(claimName).get(claimName) : reader.read(this, claimName));
+    }
+
+    private static ClaimReader reader(final Claims claim) {
+        if (claim == Claims.raw_token) {
+            return (token, name) -> token.raw;
+        }
+        if (claim.getType() == String.class) {
+            return (token, name) -> token.json(name).getString(name);
+        }
+        if (claim.getType() == Long.class) {
+            return (token, name) -> token.json(name).getJsonNumber(name).longValue();
+        }
+        if (claim.getType() == JsonObject.class) {
+            return (token, name) -> token.json(name).getJsonObject(name);
+        }
+        if (claim == Claims.groups) {
+            return (token, name) -> {
+                final Object value = token.groups();
+                return value == NO_GROUPS ? null : value;
+            };
+        }
+        if (claim.getType() == Set.class) {
+            return GeronimoJsonWebToken::readSet;
+        }
+        return (token, name) -> token.json(name).get(name);
+    }
+
+    // immutable so the same instance can be shared by all the callers
+    private Object groups() {
+        Object value = groups;
+        if (value == null) { // concurrent calls compute the same value
+            value = readSet(Claims.groups.name());
+            if (Set.class.isInstance(value)) {
+                value = Set.copyOf((Set<String>) value);
+            } else if (value == null) {
+                value = NO_GROUPS;
             }
-            if (claim.getType() == Set.class) {
-                final JsonValue jsonValue = delegate.get(claimName);
-                if (jsonValue == null) {
-                    return null;
-                }
-                if (jsonValue.getValueType() == JsonValue.ValueType.ARRAY) {
-                    return (T) JsonArray.class.cast(jsonValue).stream()
-                            .map(this::toString)
-                            .collect(toSet());
-                }
-                if (jsonValue.getValueType() == JsonValue.ValueType.STRING) {
-                    return (T) Stream.of(JsonString.class.cast(jsonValue).getString().split(","))
-                            .collect(toSet());
+            groups = value;
+        }
+        return value;
+    }
+
+    private Object readSet(final String claimName) {
+        final JsonValue jsonValue = json(claimName).get(claimName);
+        if (jsonValue == null) {
+            return null;
+        }
+        if (jsonValue.getValueType() == JsonValue.ValueType.ARRAY) {
+            return JsonArray.class.cast(jsonValue).stream()
+                    .map(this::toString)
+                    .collect(toSet());
+        }
+        if (jsonValue.getValueType() == JsonValue.ValueType.STRING) {
+            return Stream.of(JsonString.class.cast(jsonValue).getString().split(","))
+                    .collect(toSet());
+        }
+        return jsonValue;
+    }
+
+    private JsonObject json(final String claimName) {
+        final JsonObject json = delegate;
+        if (json != null) {
+            return json;
+        }
+        if (claims.containsKey(claimName)) {
+            return claims;
+        }
+        return json();
+    }
+
+    private JsonObject json() {
+        JsonObject json = delegate;
+        if (json == null) {
+            synchronized (this) {
+                json = delegate;
+                if (json == null) {
+                    try (final JsonReader reader = readerFactory.createReader(new ByteArrayInputStream(payload))) {
+                        json = reader.readObject();
+                    }
+                    delegate = json;
+                    payload = null;
                 }
-                return (T) jsonValue;
             }
-            return (T) delegate.get(claimName);
-        } catch (final IllegalArgumentException iae) {
-            return (T) delegate.get(claimName);
         }
+        return json;
     }
 
     private String toString(final Object value) {
@@ -99,6 +202,21 @@ class GeronimoJsonWebToken implements JsonWebToken {
 
     @Override
     public String toString() {
-        return delegate.toString();
+        return json().toString();
+    }
+
+    private static final class GroupBits {
+        private final int indexVersion;
+        private final BitSet bits;
+
+        private GroupBits(final int indexVersion, final BitSet bits) {
+            this.indexVersion = indexVersion;
+            this.bits = bits;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ClaimReader {
+        Object read(GeronimoJsonWebToken token, String name);
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.enterprise.inject.Vetoed;
+
+// fixed size direct mapped table: a crafted header can only replace one slot, never grow the cache
+@Vetoed
+final class HeaderCache {
+    private final AtomicReferenceArray<JwtHeader> headers;
+    private final int mask;
+
+    HeaderCache(final int size) {
+        final int capacity = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1; // next power of 2
+        this.headers = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    JwtHeader get(final CharSequence jwt, final int end, final int hash) {
+        final JwtHeader header = headers.get(index(hash));
+        return header != null && header.matches(jwt, end, hash) ? header : null;
+    }
+
+    void put(final JwtHeader header, final int hash) {
+        headers.set(index(hash), header);
+    }
+
+    private int index(final int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -40,6 +40,7 @@ public class JWK {
     private String y;
     private String crv;
     private String use;
+    private String alg;
 
     public JWK(JsonObject jsonObject) {
         kid = jsonObject.getString("kid", null);
@@ -50,6 +51,7 @@ public class JWK {
         n = jsonObject.getString("n", null);
         e = jsonObject.getString("e", null);
         use = jsonObject.getString("use", null);
+        alg = jsonObject.getString("alg", null);
     }
 
     public String getKid() {
@@ -60,6 +62,14 @@ public class JWK {
         return use;
     }
 
+    public String getAlg() {
+        return alg;
+    }
+
+    public JwtKey toJwtKey(String kid) {
+        return new JwtKey(kid, kty, alg, use, toPublicKey());
+    }
+
     public String toPemKey() {
         PublicKey publicKey = toPublicKey();
         String base64PublicKey = Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(publicKey.getEncoded());
@@ -72,8 +82,10 @@ public class JWK {
             return toRSAPublicKey();
         } else if("EC".equals(kty)) {
             return toECPublicKey();
+        } else if("OKP".equals(kty)) {
+            return toOKPPublicKey();
         } else {
-            throw new IllegalStateException("Unsupported kty. Only RSA and EC are supported.");
+            throw new IllegalStateException("Unsupported kty. Only RSA, EC and OKP are supported.");
         }
     }
 
@@ -105,6 +117,34 @@ public class JWK {
         }
     }
 
+    // RFC 8037, x is the raw public key, the X.509 encoding is just a fixed prefix (algorithm identifier) followed by it
+    // note: the EdDSA KeyFactory needs java 15+ or a provider supporting it
+    private PublicKey toOKPPublicKey() {
+        final byte[] prefix;
+        final int keyLength;
+        if ("Ed25519".equals(crv)) {
+            prefix = new byte[]{0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00};
+            keyLength = 32;
+        } else if ("Ed448".equals(crv)) {
+            prefix = new byte[]{0x30, 0x43, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x71, 0x03, 0x3a, 0x00};
+            keyLength = 57;
+        } else {
+            throw new IllegalStateException("Unsupported crv for OKP keys: " + crv + ", only Ed25519 and Ed448 are supported.");
+        }
+        byte[] key = ofNullable(x).map(Base64.getUrlDecoder()::decode).orElseThrow(() -> new IllegalStateException("x must be set for OKP keys."));
+        if (key.length != keyLength) {
+            throw new IllegalStateException("Invalid x length for " + crv + " key.");
+        }
+        byte[] encoded = new byte[prefix.length + keyLength];
+        System.arraycopy(prefix, 0, encoded, 0, prefix.length);
+        System.arraycopy(key, 0, encoded, prefix.length, keyLength);
+        try {
+            return getInstance("EdDSA").generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static String mapCrv(String crv) {
         if (crv.endsWith("256")) {
            return "secp256r1";
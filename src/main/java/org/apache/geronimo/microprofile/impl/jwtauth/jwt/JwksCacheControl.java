@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Locale.ROOT;
+
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.OptionalLong;
+
+import javax.enterprise.inject.Vetoed;
+
+// computes when the JWKS should be downloaded again from the HTTP cache headers of its response
+@Vetoed
+final class JwksCacheControl {
+    private JwksCacheControl() {
+        // no-op
+    }
+
+    // in seconds, fallback is used when the response has no cache header
+    static long nextRefresh(final HttpHeaders headers, final long fallback, final long min, final long max, final long nowMillis) {
+        final OptionalLong maxAge = maxAge(headers, nowMillis);
+        final long delay = maxAge.isPresent() ? maxAge.getAsLong() : fallback;
+        return Math.max(min, Math.min(max, delay));
+    }
+
+    private static OptionalLong maxAge(final HttpHeaders headers, final long nowMillis) {
+        long maxAge = -1;
+        for (final String value : headers.allValues("Cache-Control")) {
+            for (final String directive : value.split(",")) {
+                final String normalized = directive.trim().toLowerCase(ROOT);
+                if ("no-cache".equals(normalized) || "no-store".equals(normalized)) {
+                    return OptionalLong.of(0);
+                }
+                if (normalized.startsWith("max-age=")) {
+                    try {
+                        maxAge = Long.parseLong(normalized.substring("max-age=".length()).replace("\"", ""));
+                    } catch (final NumberFormatException nfe) {
+                        return OptionalLong.of(0); // invalid so considered as stale
+                    }
+                }
+            }
+        }
+        if (maxAge >= 0) {
+            return OptionalLong.of(Math.max(0, maxAge - age(headers)));
+        }
+
+        final String expires = headers.firstValue("Expires").orElse(null);
+        if (expires == null) {
+            return OptionalLong.empty();
+        }
+        try {
+            final long expiresAt = parseDate(expires);
+            final long now = headers.firstValue("Date").map(JwksCacheControl::parseDate).orElse(nowMillis);
+            return OptionalLong.of(Math.max(0, (expiresAt - now) / 1000));
+        } catch (final DateTimeParseException dtpe) {
+            return OptionalLong.of(0); // "0" or an invalid date means already expired
+        }
+    }
+
+    // set by caches (proxies), an invalid value is ignored instead of failing the refresh
+    private static long age(final HttpHeaders headers) {
+        try {
+            return Math.max(0, Long.parseLong(headers.firstValue("Age").orElse("0").trim()));
+        } catch (final NumberFormatException nfe) {
+            return 0;
+        }
+    }
+
+    private static long parseDate(final String value) {
+        return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.enterprise.inject.Vetoed;
+
+// last good JWKS keys stored on disk to verify tokens at startup without waiting for the JWKS download,
+// keys are stored X.509 encoded so loading them does not need any JSON/base64/big integer processing
+@Vetoed
+final class JwksSnapshot {
+    private static final int MAGIC = 0x4A574B53; // JWKS
+    private static final byte VERSION = 2;
+
+    private final long downloadedAt;
+    private final String etag;
+    private final String lastModified;
+    private final Map<String, JwtKey> keys;
+
+    JwksSnapshot(final long downloadedAt, final String etag, final String lastModified, final Map<String, JwtKey> keys) {
+        this.downloadedAt = downloadedAt;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.keys = keys;
+    }
+
+    // last time (epoch millis) the JWKS server confirmed these keys
+    long getDownloadedAt() {
+        return downloadedAt;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    String getLastModified() {
+        return lastModified;
+    }
+
+    Map<String, JwtKey> getKeys() {
+        return keys;
+    }
+
+    // written in a temporary file then moved so a crash never leaves a partial snapshot
+    void write(final Path path) throws IOException {
+        final Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        final Path tmp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(downloadedAt);
+                writeString(out, etag);
+                writeString(out, lastModified);
+                out.writeInt(keys.size());
+                for (final JwtKey key : keys.values()) {
+                    final Key publicKey = key.getKey();
+                    writeString(out, key.getKid());
+                    writeString(out, key.getKty());
+                    writeString(out, key.getAlg());
+                    writeString(out, key.getUse());
+                    writeString(out, publicKey.getAlgorithm());
+                    final byte[] encoded = publicKey.getEncoded();
+                    out.writeShort(encoded.length);
+                    out.write(encoded);
+                }
+            }
+            try {
+                Files.move(tmp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // null if there is no snapshot, throws an exception if it is not readable (including the previous format)
+    static JwksSnapshot read(final Path path) throws IOException, GeneralSecurityException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Unsupported JWKS snapshot: " + path);
+            }
+            final long downloadedAt = in.readLong();
+            final String etag = readString(in);
+            final String lastModified = readString(in);
+            final int count = in.readInt();
+            final Map<String, JwtKey> keys = new HashMap<>(count * 4 / 3 + 1);
+            final Map<String, KeyFactory> factories = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                final String kid = readString(in);
+                final String kty = readString(in);
+                final String alg = readString(in);
+                final String use = readString(in);
+                final String algorithm = readString(in);
+                final byte[] encoded = new byte[in.readUnsignedShort()];
+                in.readFully(encoded);
+                KeyFactory factory = factories.get(algorithm);
+                if (factory == null) {
+                    factory = KeyFactory.getInstance(algorithm);
+                    factories.put(algorithm, factory);
+                }
+                final PublicKey key = factory.generatePublic(new X509EncodedKeySpec(encoded));
+                keys.put(kid, new JwtKey(kid, kty, alg, use, key));
+            }
+            return new JwksSnapshot(downloadedAt, etag, lastModified, keys);
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Optional.ofNullable;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import javax.enterprise.inject.Vetoed;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.JsonValue;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.jfr.JwksFetchEvent;
+import org.apache.geronimo.microprofile.impl.jwtauth.metrics.GeronimoJwtAuthMetrics;
+
+// one remote JWKS: its keys, its refresh schedule and its own thread so a slow server does not delay the other ones
+@Vetoed
+class JwksSource {
+    private final KidMapper owner;
+    private final String name;
+    private final String url;
+    private final String defaultKid;
+    private final JsonReaderFactory readerFactory;
+    private final GeronimoJwtAuthMetrics metrics;
+    private final int refreshInterval;
+    private final boolean cacheControl;
+    private final long minCacheInterval;
+    private final long maxCacheInterval;
+    private final Path snapshot;
+    private final long snapshotMaxAge;
+    private final boolean unknownKidRefresh;
+    private final long unknownKidRefreshInterval;
+    private final long unknownKidRefreshTimeout;
+
+    private volatile ConcurrentMap<String, JwtKey> keys = new ConcurrentHashMap<>();
+    private volatile long keysVersion;
+    private volatile CompletableFuture<Void> initialLoad;
+    private volatile HttpClient httpClient;
+    private volatile ScheduledExecutorService backgroundThread;
+    private CompletableFuture<Void> lastLoad; // guarded by this
+    private final AtomicLong refreshCount = new AtomicLong();
+    private volatile long lastRefreshSuccess;
+    private volatile long lastRefreshFailure;
+    private volatile String lastRefreshError;
+    private volatile long lastRefreshDuration;
+    private volatile long maxRefreshDuration;
+    private volatile long nextRefresh;
+    // validators of the last downloaded JWKS to only get it again when it changed
+    private volatile String etag;
+    private volatile String lastModified;
+    private volatile String lastJwks;
+    private volatile int jwksKeyCount;
+    private final Object unknownKidRefreshLock = new Object();
+    private long lastUnknownKidRefresh;
+    private volatile CompletableFuture<Void> unknownKidRefreshRequest;
+
+    // settings reads a jwks.* configuration key (without the jwks. prefix) with its default
+    JwksSource(final KidMapper owner, final String name, final String url, final String defaultKid,
+               final JsonReaderFactory readerFactory, final GeronimoJwtAuthMetrics metrics, final BiFunction<String, String, String> settings) {
+        this.owner = owner;
+        this.name = name;
+        this.url = url;
+        this.defaultKid = defaultKid;
+        this.readerFactory = readerFactory;
+        this.metrics = metrics;
+        refreshInterval = Integer.parseInt(settings.apply("invalidation.interval", "0"));
+        cacheControl = Boolean.parseBoolean(settings.apply("cache-control.active", "false"));
+        minCacheInterval = Math.max(1, Long.parseLong(settings.apply("cache-control.min-interval", "60")));
+        maxCacheInterval = Long.parseLong(settings.apply("cache-control.max-interval", "86400"));
+        nextRefresh = minCacheInterval;
+        unknownKidRefresh = Boolean.parseBoolean(settings.apply("unknown-kid.refresh.active", "false"));
+        unknownKidRefreshInterval = SECONDS.toNanos(Long.parseLong(settings.apply("unknown-kid.refresh.min-interval", "30")));
+        unknownKidRefreshTimeout = Long.parseLong(settings.apply("unknown-kid.refresh.timeout", "300"));
+        lastUnknownKidRefresh = System.nanoTime() - unknownKidRefreshInterval;
+        snapshot = ofNullable(settings.apply("snapshot.path", null))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(Paths::get)
+                .orElse(null);
+        snapshotMaxAge = SECONDS.toMillis(Long.parseLong(settings.apply("snapshot.max-age", "86400")));
+    }
+
+    void start() {
+        if (snapshot != null) { // keys usable right now, the download below revalidates them
+            loadSnapshot();
+        }
+        backgroundThread = owner.newExecutor();
+        if (refreshInterval > 0 && !cacheControl) {
+            backgroundThread.scheduleAtFixedRate(() -> owner.reloadRemoteKeys(this, backgroundThread), refreshInterval, refreshInterval, SECONDS);
+        }
+        httpClient = newHttpClient();
+        initialLoad = owner.reloadRemoteKeys(this, backgroundThread);// inital load, otherwise the background thread is too slow to start and serve
+        if (cacheControl) { // each refresh schedules the next one depending the response cache headers
+            initialLoad.whenComplete((ignored, error) -> scheduleRefresh());
+        } else if (refreshInterval <= 0) {
+            releaseOnceLoaded(initialLoad);
+        }
+    }
+
+    void stop() {
+        final CompletableFuture<Void> pending = initialLoad;
+        if (pending != null && !pending.isDone()) {
+            pending.cancel(true);
+        }
+        stopBackgroundThread();
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    JwtKey getKey(final String kid) {
+        return keys.get(kid);
+    }
+
+    Map<String, JwtKey> getKeys() {
+        return unmodifiableMap(keys);
+    }
+
+    // changes each time the keys change, enables to cache what is computed from the keys
+    long getKeysVersion() {
+        return keysVersion;
+    }
+
+    // null once the first download is done
+    CompletableFuture<Void> getInitialLoad() {
+        final CompletableFuture<Void> pending = initialLoad;
+        return pending == null || pending.isDone() ? null : pending;
+    }
+
+    // returns true if the initial JWKS download was still running
+    boolean awaitInitialLoad() {
+        final CompletableFuture<Void> pending = initialLoad;
+        if (pending == null || pending.isDone()) {
+            return false;
+        }
+        try {
+            pending.get();
+            initialLoad = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+        return true;
+    }
+
+    // waits for the download triggered by an unknown kid if there is one, returns true if it waited
+    boolean awaitUnknownKid() {
+        final CompletableFuture<Void> refresh = refreshUnknownKid();
+        if (refresh == null) {
+            return false;
+        }
+        try {
+            refresh.get(unknownKidRefreshTimeout, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException | TimeoutException e) {
+            // keep current keys
+        }
+        return true;
+    }
+
+    // an unknown kid can be a key rotation so download the JWKS again, concurrent misses share the same download
+    // and a single one is started per interval whatever the kids are to not let random kids flood the server,
+    // returns null when no download is in progress
+    CompletableFuture<Void> refreshUnknownKid() {
+        if (!unknownKidRefresh) {
+            return null;
+        }
+        CompletableFuture<Void> current = unknownKidRefreshRequest;
+        if (current != null && !current.isDone()) {
+            return current;
+        }
+        synchronized (unknownKidRefreshLock) {
+            current = unknownKidRefreshRequest;
+            if (current != null && !current.isDone()) {
+                return current;
+            }
+            final long now = System.nanoTime();
+            if (now - lastUnknownKidRefresh < unknownKidRefreshInterval) {
+                return null;
+            }
+            lastUnknownKidRefresh = now;
+            current = startRefresh();
+            unknownKidRefreshRequest = current;
+            return current;
+        }
+    }
+
+    // the background thread and http client are recreated if the keys were loaded only once
+    synchronized CompletableFuture<Void> startRefresh() {
+        if (backgroundThread == null || backgroundThread.isShutdown()) {
+            backgroundThread = owner.newExecutor();
+        }
+        if (httpClient == null) {
+            httpClient = newHttpClient();
+        }
+        final CompletableFuture<Void> refresh = owner.reloadRemoteKeys(this, backgroundThread);
+        if (refreshInterval <= 0 && !cacheControl) {
+            releaseOnceLoaded(refresh);
+        }
+        return refresh;
+    }
+
+    // keys loaded on demand only, the thread and client are released once the last started download is done,
+    // a refresh started meanwhile (unknown kid, JMX) keeps them
+    private synchronized void releaseOnceLoaded(final CompletableFuture<Void> load) {
+        lastLoad = load;
+        load.whenCompleteAsync((ignored, error) -> {
+            synchronized (this) {
+                if (lastLoad == load) {
+                    closeHttpClient();
+                    stopBackgroundThread();
+                }
+            }
+        }, backgroundThread);
+    }
+
+    void refresh() {
+        try {
+            startRefresh().get(1, MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException(e.getCause().toString());
+        } catch (final TimeoutException e) {
+            throw new IllegalStateException("JWKS refresh still in progress after one minute");
+        }
+    }
+
+    CompletableFuture<Void> reload(final Executor executor) {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder().GET().uri(URI.create(url)).header("Accept", "application/json");
+        if (etag != null) {
+            requestBuilder.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            requestBuilder.header("If-Modified-Since", lastModified);
+        }
+        HttpRequest request = requestBuilder.build();
+        final long start = System.nanoTime();
+        final JwksFetchEvent event = new JwksFetchEvent();
+        event.begin();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        onRefreshFailure(start, event, -1, error);
+                    }
+                })
+                .thenAcceptAsync(response -> {
+                    try {
+                        final int keys = reload(response);
+                        onRefresh(start);
+                        lastRefreshSuccess = System.currentTimeMillis();
+                        if (metrics.isActive()) {
+                            metrics.onJwksFetch(name, System.nanoTime() - start, response.statusCode(), keys);
+                        }
+                        event.complete(url, response.statusCode(), keys, null);
+                    } catch (final RuntimeException re) {
+                        onRefreshFailure(start, event, response.statusCode(), re);
+                        throw re;
+                    }
+                }, executor);
+    }
+
+    // returns the number of usable keys
+    private int reload(final HttpResponse<String> response) {
+        final int status = response.statusCode();
+        if (status != HttpURLConnection.HTTP_NOT_MODIFIED && (status < 200 || status > 299)) {
+            throw new IllegalStateException("Unexpected JWKS response status: " + status);
+        }
+        if (cacheControl) {
+            nextRefresh = JwksCacheControl.nextRefresh(
+                    response.headers(), refreshInterval > 0 ? refreshInterval : maxCacheInterval,
+                    minCacheInterval, maxCacheInterval, System.currentTimeMillis());
+        }
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            saveSnapshot(keys); // confirmed by the server, it restarts the snapshot max age
+            return jwksKeyCount;
+        }
+        final String body = response.body();
+        if (body.equals(lastJwks)) { // server not supporting conditional requests but the keys did not change
+            saveSnapshot(keys);
+            return jwksKeyCount;
+        }
+
+        List<JWK> jwks = parseKeys(body);
+        ConcurrentHashMap<String, JwtKey> newKeys = new ConcurrentHashMap<>();
+        jwks.forEach(key -> ofNullable(key.getKid()).ifPresent(kid -> {
+            try {
+                newKeys.put(kid, key.toJwtKey(kid));
+            } catch (final RuntimeException re) {
+                // unsupported (kty/crv not supported by the JVM) or invalid (bad base64, missing member) key,
+                // ignore it to keep the other ones usable
+            }
+        }));
+        if (newKeys.isEmpty() && defaultKid != null && jwks.size() == 1) {
+            // use default key
+            try {
+                newKeys.put(defaultKid, jwks.get(0).toJwtKey(defaultKid));
+            } catch (final RuntimeException re) {
+                // same as above, no usable key
+            }
+        }
+        if (!newKeys.equals(keys)) {
+            keys = newKeys;
+            keysVersion++; // single writer (background thread)
+        }
+        // validators are only kept once the keys are used, else a 304 would keep the previous keys forever
+        etag = response.headers().firstValue("ETag").orElse(null);
+        lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        lastJwks = body;
+        jwksKeyCount = newKeys.size();
+        saveSnapshot(newKeys);
+        return jwksKeyCount;
+    }
+
+    private void saveSnapshot(final Map<String, JwtKey> keys) {
+        if (snapshot != null && !keys.isEmpty()) {
+            try {
+                new JwksSnapshot(System.currentTimeMillis(), etag, lastModified, keys).write(snapshot);
+            } catch (final IOException | RuntimeException e) {
+                // the snapshot only speeds up the next startup, the keys are usable
+            }
+        }
+    }
+
+    private List<JWK> parseKeys(final String body) {
+        try (final JsonReader reader = readerFactory.createReader(new StringReader(body))) {
+            JsonObject keySet = reader.readObject();
+            JsonArray keys = keySet.getJsonArray("keys");
+            return keys.stream()
+                    .map(JsonValue::asJsonObject)
+                    .map(JWK::new)
+                    .filter(it -> it.getUse() == null || "sig".equals(it.getUse()))
+                    .collect(toList());
+        }
+    }
+
+    private void loadSnapshot() {
+        try {
+            final JwksSnapshot saved = JwksSnapshot.read(snapshot);
+            if (saved == null || saved.getKeys().isEmpty()) {
+                return;
+            }
+            // the provider can have revoked old keys since, they are only trusted once downloaded again
+            if (snapshotMaxAge > 0 && System.currentTimeMillis() - saved.getDownloadedAt() > snapshotMaxAge) {
+                return;
+            }
+            keys = new ConcurrentHashMap<>(saved.getKeys());
+            keysVersion++;
+            etag = saved.getEtag();
+            lastModified = saved.getLastModified();
+            jwksKeyCount = saved.getKeys().size();
+        } catch (final IOException | GeneralSecurityException | RuntimeException e) {
+            // corrupted or not supported by this JVM (EdDSA), ignored since the JWKS download replaces it
+        }
+    }
+
+    private HttpClient newHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder();
+        owner.customize(builder);
+        if (refreshInterval > 0 || cacheControl) {
+            builder.executor(backgroundThread);
+        }
+        return builder.build();
+    }
+
+    private void scheduleRefresh() {
+        final ScheduledExecutorService executor = backgroundThread;
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        try {
+            executor.schedule(
+                    () -> owner.reloadRemoteKeys(this, executor).whenComplete((ignored, error) -> scheduleRefresh()),
+                    nextRefresh, SECONDS);
+        } catch (final RejectedExecutionException ree) {
+            // destroyed
+        }
+    }
+
+    private void onRefreshFailure(final long start, final JwksFetchEvent event, final int status, final Throwable error) {
+        onRefresh(start);
+        nextRefresh = minCacheInterval; // retry soon but without flooding the server
+        lastRefreshFailure = System.currentTimeMillis();
+        lastRefreshError = (error instanceof CompletionException && error.getCause() != null ? error.getCause() : error).toString();
+        if (metrics.isActive()) {
+            metrics.onJwksFetch(name, System.nanoTime() - start, status, -1);
+        }
+        event.complete(url, status, -1, lastRefreshError);
+    }
+
+    private void onRefresh(final long start) {
+        final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastRefreshDuration = duration;
+        if (duration > maxRefreshDuration) { // refreshes are sequential, no need of a CAS
+            maxRefreshDuration = duration;
+        }
+        refreshCount.incrementAndGet();
+    }
+
+    private void closeHttpClient() {
+        if (httpClient instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) httpClient).close();
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+        httpClient = null;
+    }
+
+    private void stopBackgroundThread() {
+        if (backgroundThread != null) {
+            backgroundThread.shutdownNow();
+            try {
+                backgroundThread.awaitTermination(1, MINUTES);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    int getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    long getLastRefreshSuccess() {
+        return lastRefreshSuccess;
+    }
+
+    long getLastRefreshFailure() {
+        return lastRefreshFailure;
+    }
+
+    String getLastRefreshError() {
+        return lastRefreshError;
+    }
+
+    long getLastRefreshDuration() {
+        return lastRefreshDuration;
+    }
+
+    long getMaxRefreshDuration() {
+        return maxRefreshDuration;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import javax.enterprise.inject.Vetoed;
+
+// refresh state of a jwks.sources entry exposed by KidMapperMXBean, same units as its attributes
+@Vetoed
+public class JwksSourceStats {
+    private final String url;
+    private final long keysVersion;
+    private final int refreshInterval;
+    private final long refreshCount;
+    private final long lastRefreshSuccess;
+    private final long lastRefreshFailure;
+    private final String lastRefreshError;
+    private final long lastRefreshDuration;
+    private final long maxRefreshDuration;
+
+    JwksSourceStats(final JwksSource source) {
+        this.url = source.getUrl();
+        this.keysVersion = source.getKeysVersion();
+        this.refreshInterval = source.getRefreshInterval();
+        this.refreshCount = source.getRefreshCount();
+        this.lastRefreshSuccess = source.getLastRefreshSuccess();
+        this.lastRefreshFailure = source.getLastRefreshFailure();
+        this.lastRefreshError = source.getLastRefreshError();
+        this.lastRefreshDuration = source.getLastRefreshDuration();
+        this.maxRefreshDuration = source.getMaxRefreshDuration();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getKeysVersion() {
+        return keysVersion;
+    }
+
+    public int getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public long getRefreshCount() {
+        return refreshCount;
+    }
+
+    public long getLastRefreshSuccess() {
+        return lastRefreshSuccess;
+    }
+
+    public long getLastRefreshFailure() {
+        return lastRefreshFailure;
+    }
+
+    public String getLastRefreshError() {
+        return lastRefreshError;
+    }
+
+    public long getLastRefreshDuration() {
+        return lastRefreshDuration;
+    }
+
+    public long getMaxRefreshDuration() {
+        return maxRefreshDuration;
+    }
+}
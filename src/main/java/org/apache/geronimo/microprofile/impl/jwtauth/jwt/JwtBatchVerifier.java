@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Objects.requireNonNull;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.JsonException;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+
+// verifies tokens outside of a request (messaging for ex), tokens are verified in parallel but results keep the input order.
+// header, keys and verification state are shared with the request flow since it reuses the same JwtParser
+@ApplicationScoped
+public class JwtBatchVerifier {
+    @Inject
+    private GeronimoJwtAuthConfig config;
+
+    @Inject
+    private JwtParser parser;
+
+    private Executor executor;
+    private ExecutorService ownedExecutor;
+    private int maxInFlight;
+
+    @PostConstruct
+    private void init() {
+        maxInFlight = Integer.parseInt(config.read("batch.max-in-flight", "256"));
+        final int parallelism = Integer.parseInt(config.read("batch.parallelism", "0"));
+        if (parallelism > 0) {
+            final AtomicInteger counter = new AtomicInteger();
+            ownedExecutor = Executors.newFixedThreadPool(parallelism, worker -> {
+                final Thread thread = new Thread(worker, JwtBatchVerifier.class.getName() + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor = ownedExecutor;
+        } else {
+            executor = ForkJoinPool.commonPool();
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+            try {
+                ownedExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public JwtVerificationResult verify(final String token) {
+        try {
+            return new JwtVerificationResult(token, parser.parse(token), null);
+        } catch (final JwtException je) {
+            return new JwtVerificationResult(token, null, je);
+        } catch (final JsonException je) { // unparseable json
+            final JwtException error = new JwtException("JWT is not valid", HttpURLConnection.HTTP_BAD_REQUEST, Rejection.MALFORMED);
+            error.initCause(je);
+            return new JwtVerificationResult(token, null, error);
+        } catch (final RuntimeException re) { // the token was not verified (keys not available for ex), it can be valid
+            final JwtException error = new JwtException("JWT can't be verified", HttpURLConnection.HTTP_UNAVAILABLE, Rejection.UNAVAILABLE);
+            error.initCause(re);
+            return new JwtVerificationResult(token, null, error);
+        }
+    }
+
+    public List<JwtVerificationResult> verify(final Collection<String> tokens) {
+        return verify(tokens, executor);
+    }
+
+    public List<JwtVerificationResult> verify(final Collection<String> tokens, final Executor executor) {
+        final List<JwtVerificationResult> results = new ArrayList<>(tokens.size());
+        final Queue<CompletableFuture<JwtVerificationResult>> window = new ArrayDeque<>(Math.min(tokens.size(), maxInFlight));
+        for (final String token : tokens) {
+            if (window.size() >= maxInFlight) {
+                results.add(window.poll().join());
+            }
+            window.add(CompletableFuture.supplyAsync(() -> verify(token), executor));
+        }
+        while (!window.isEmpty()) {
+            results.add(window.poll().join());
+        }
+        return results;
+    }
+
+    public Flow.Publisher<JwtVerificationResult> verify(final Flow.Publisher<String> tokens) {
+        return verify(tokens, executor);
+    }
+
+    // at most batch.max-in-flight tokens are requested to the upstream publisher and not yet consumed downstream
+    public Flow.Publisher<JwtVerificationResult> verify(final Flow.Publisher<String> tokens, final Executor executor) {
+        requireNonNull(tokens, "tokens can't be null");
+        return subscriber -> new VerifyingSubscription(subscriber, executor).subscribe(tokens);
+    }
+
+    private class VerifyingSubscription implements Flow.Subscriber<String>, Flow.Subscription {
+        private final Flow.Subscriber<? super JwtVerificationResult> downstream;
+        private final Executor executor;
+        private final Queue<CompletableFuture<JwtVerificationResult>> window = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean subscribed = new AtomicBoolean();
+        private volatile Flow.Subscription upstream;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private volatile Throwable invalidRequest;
+
+        private VerifyingSubscription(final Flow.Subscriber<? super JwtVerificationResult> downstream, final Executor executor) {
+            this.downstream = requireNonNull(downstream, "subscriber can't be null");
+            this.executor = executor;
+        }
+
+        private void subscribe(final Flow.Publisher<String> tokens) {
+            downstream.onSubscribe(this);
+            tokens.subscribe(this);
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            if (!subscribed.compareAndSet(false, true)) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            if (cancelled || invalidRequest != null) {
+                subscription.cancel();
+            } else {
+                subscription.request(maxInFlight);
+            }
+        }
+
+        @Override
+        public void onNext(final String token) {
+            final CompletableFuture<JwtVerificationResult> result = CompletableFuture.supplyAsync(() -> verify(token), executor);
+            window.add(result);
+            result.whenComplete((r, e) -> drain());
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) { // emitted by drain() to not race an onNext
+                invalidRequest = new IllegalArgumentException("Requested " + n + " elements, it must be > 0");
+                final Flow.Subscription subscription = upstream;
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                drain();
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> {
+                final long sum = current + added;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            final Flow.Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            drain();
+        }
+
+        // only one thread emits at a time, results are emitted in the order of the tokens
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    window.forEach(it -> it.cancel(false));
+                    window.clear();
+                    return;
+                }
+                final Throwable invalid = invalidRequest;
+                if (invalid != null) {
+                    cancelled = true;
+                    window.forEach(it -> it.cancel(false));
+                    window.clear();
+                    downstream.onError(invalid);
+                    return;
+                }
+                CompletableFuture<JwtVerificationResult> head;
+                while (demand.get() > 0 && (head = window.peek()) != null && head.isDone()) {
+                    window.poll();
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    downstream.onNext(head.join());
+                    if (cancelled || invalidRequest != null) {
+                        break;
+                    }
+                    upstream.request(1);
+                }
+                if (done && window.isEmpty() && !cancelled && invalidRequest == null) {
+                    cancelled = true;
+                    final Throwable throwable = error;
+                    if (throwable != null) {
+                        downstream.onError(throwable);
+                    } else {
+                        downstream.onComplete();
+                    }
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.util.Collection;
+
+import javax.enterprise.inject.Vetoed;
+
+// validated JOSE header, immutable since it is shared between requests through the header cache
+@Vetoed
+final class JwtHeader {
+    private final String raw;
+    private final int hash;
+    private final boolean validTyp;
+    private final String alg;
+    private final String kid;
+    private final Collection<String> issuers;
+
+    JwtHeader(final String raw, final boolean validTyp, final String alg, final String kid,
+              final Collection<String> issuers) {
+        this.raw = raw;
+        this.hash = raw.hashCode();
+        this.validTyp = validTyp;
+        this.alg = alg;
+        this.kid = kid;
+        this.issuers = issuers;
+    }
+
+    boolean isValidTyp() {
+        return validTyp;
+    }
+
+    String getAlg() {
+        return alg;
+    }
+
+    String getKid() {
+        return kid;
+    }
+
+    Collection<String> getIssuers() {
+        return issuers;
+    }
+
+    boolean matches(final CharSequence jwt, final int end, final int hash) {
+        if (this.hash != hash || raw.length() != end) {
+            return false;
+        }
+        for (int i = 0; i < end; i++) {
+            if (raw.charAt(i) != jwt.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // same as String#hashCode() without creating the header string
+    static int hash(final CharSequence jwt, final int end) {
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            hash = 31 * hash + jwt.charAt(i);
+        }
+        return hash;
+    }
+}
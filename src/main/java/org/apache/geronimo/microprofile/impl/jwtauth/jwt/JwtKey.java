@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.Objects;
+
+import javax.enterprise.inject.Vetoed;
+
+// key material of a kid: either a parsed key (JWKS) or the configured value (PEM or HMAC secret)
+@Vetoed
+public final class JwtKey {
+    private final String kid;
+    private final String kty;
+    private final String alg;
+    private final String use;
+    private final Key key;
+    private volatile String value;
+
+    JwtKey(final String kid, final String kty, final String alg, final String use, final Key key) {
+        this.kid = kid;
+        this.kty = kty;
+        this.alg = alg;
+        this.use = use;
+        this.key = key;
+    }
+
+    JwtKey(final String kid, final String value) {
+        this(kid, null, null, null, null);
+        this.value = value;
+    }
+
+    public String getKid() {
+        return kid;
+    }
+
+    public String getKty() {
+        return kty;
+    }
+
+    public String getAlg() {
+        return alg;
+    }
+
+    public String getUse() {
+        return use;
+    }
+
+    // null when the key comes from the configuration, it is then parsed depending the algorithm
+    public Key getKey() {
+        return key;
+    }
+
+    // the configured value or the PEM of the parsed public key
+    public String getValue() {
+        String result = value;
+        if (result == null && PublicKey.class.isInstance(key)) {
+            result = "-----BEGIN PUBLIC KEY-----" + Base64.getEncoder().encodeToString(key.getEncoded()) + "-----END PUBLIC KEY-----";
+            value = result;
+        }
+        return result;
+    }
+
+    // SHA-256 of the encoded public key (base64url), null for secrets to not help brute forcing them
+    String getThumbprint() {
+        final byte[] encoded;
+        if (PublicKey.class.isInstance(key)) {
+            encoded = key.getEncoded();
+        } else if (key == null && value != null && value.trim().startsWith("-----BEGIN ") && !value.contains("PRIVATE")) {
+            try {
+                encoded = Base64.getMimeDecoder().decode(value.replaceAll("-----[A-Z ]+-----", ""));
+            } catch (final IllegalArgumentException iae) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MessageDigest.getInstance("SHA-256").digest(encoded));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final JwtKey other = JwtKey.class.cast(o);
+        return Objects.equals(kid, other.kid) && Objects.equals(alg, other.alg) && Objects.equals(use, other.use) &&
+                (key != null ? key.equals(other.key) : other.key == null && Objects.equals(value, other.value));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kid, alg, key != null ? key : value);
+    }
+}
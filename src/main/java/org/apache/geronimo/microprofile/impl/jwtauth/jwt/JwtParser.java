@@ -20,25 +20,46 @@ import static java.util.Collections.emptyMap;
 
 import java.io.ByteArrayInputStream;
 import java.net.HttpURLConnection;
-import java.util.Base64;
-import java.util.Collection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.json.Json;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
 import javax.json.JsonReaderFactory;
 import javax.json.JsonString;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
 
 import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
 import org.apache.geronimo.microprofile.impl.jwtauth.cdi.GeronimoJwtAuthExtension;
 import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+import org.apache.geronimo.microprofile.impl.jwtauth.jfr.TokenDecodeEvent;
+import org.apache.geronimo.microprofile.impl.jwtauth.jfr.TokenVerificationEvent;
+import org.apache.geronimo.microprofile.impl.jwtauth.metrics.GeronimoJwtAuthMetrics;
 import org.eclipse.microprofile.jwt.Claims;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
 @ApplicationScoped
 public class JwtParser {
+    static final int HEADER = 0;
+    static final int PAYLOAD = 1;
+    static final int SIGNATURE = 2;
+    static final int SIGNING_INPUT = 3;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024;
+
     @Inject
     private GeronimoJwtAuthConfig config;
 
@@ -46,20 +67,36 @@ public class JwtParser {
     private KidMapper kidMapper;
 
     @Inject
-    private DateValidator dateValidator;
+    private ValidationPipeline pipeline;
+
+    @Inject
+    private TokenCache tokenCache;
 
     @Inject
-    private SignatureValidator signatureValidator;
+    private RejectionCache rejectionCache;
 
     @Inject
     private GeronimoJwtAuthExtension extension;
 
+    @Inject
+    private GeronimoJwtAuthMetrics metrics;
+
+    // per thread decoding buffers (only JDK types to not leak the application classloader),
+    // the JSON is fully read before they are reused
+    private final ThreadLocal<byte[][]> buffers = ThreadLocal.withInitial(() -> new byte[][]{
+            new byte[256], new byte[2048], new byte[512], new byte[2048]
+    });
     private JsonReaderFactory readerFactory;
+    private JsonParserFactory parserFactory;
+    private JsonBuilderFactory builderFactory;
 
     private String defaultKid;
     private String defaultAlg;
     private String defaultTyp;
     private boolean validateTyp;
+    private boolean lazyClaims;
+    private boolean cacheTokens;
+    private HeaderCache headerCache;
 
     @PostConstruct
     private void init() {
@@ -68,52 +105,291 @@ public class JwtParser {
         defaultAlg = config.read("jwt.header.alg.default", "RS256");
         defaultTyp = config.read("jwt.header.typ.default", "JWT");
         validateTyp = Boolean.parseBoolean(config.read("jwt.header.typ.validate", "true"));
+        lazyClaims = Boolean.parseBoolean(config.read("claims.lazy", "false"));
+        cacheTokens = tokenCache.isActive() && pipeline.isCacheable(); // a cache hit skips the stages
+        final int headerCacheSize = Integer.parseInt(config.read("header.cache.size", "32"));
+        if (headerCacheSize > 0) {
+            headerCache = new HeaderCache(headerCacheSize);
+        }
+        if (lazyClaims) {
+            parserFactory = Json.createParserFactory(emptyMap());
+            builderFactory = Json.createBuilderFactory(emptyMap());
+        }
     }
 
     public JsonWebToken parse(final String jwt) {
-        final int firstDot = jwt.indexOf('.');
-        if (firstDot < 0) {
-            throw new JwtException("JWT is not valid", HttpURLConnection.HTTP_BAD_REQUEST);
-        }
-        final int secondDot = jwt.indexOf('.', firstDot + 1);
-        if (secondDot < 0 || jwt.indexOf('.', secondDot + 1) > 0 || jwt.length() <= secondDot) {
-            throw new JwtException("JWT is not valid", HttpURLConnection.HTTP_BAD_REQUEST);
+        return parse(jwt, null);
+    }
+
+    public JsonWebToken parse(final CharSequence jwt) {
+        return parse(jwt, null);
+    }
+
+    // the buffer must contain only the token (from its position to its limit), it is not modified
+    public JsonWebToken parse(final ByteBuffer jwt) {
+        final ByteBuffer token = jwt.slice();
+        return parse(new AsciiSequence(token), token);
+    }
+
+    public CompletionStage<JsonWebToken> parseAsync(final String jwt) {
+        return parseAsync(jwt, ForkJoinPool.commonPool());
+    }
+
+    // never blocks the caller on the JWKS loading, if the key is not yet available the parsing is resumed
+    // on the executor once it is loaded, otherwise it is done synchronously
+    public CompletionStage<JsonWebToken> parseAsync(final String jwt, final Executor executor) {
+        final CompletableFuture<String> key;
+        try {
+            final int firstDot = jwt.indexOf('.');
+            JwtHeader header;
+            try {
+                header = firstDot > 0 ? loadHeader(jwt, firstDot, buffers.get()) : null;
+            } catch (final JsonException je) { // parse() rejects it
+                header = null;
+            }
+            if (header == null || !header.isValidTyp()) { // will fail anyway
+                return CompletableFuture.completedFuture(parse(jwt));
+            }
+            key = kidMapper.loadKeyAsync(header.getKid()).toCompletableFuture();
+            if (key.isDone() && !key.isCompletedExceptionally()) {
+                return CompletableFuture.completedFuture(parse(jwt));
+            }
+        } catch (final RuntimeException re) {
+            return CompletableFuture.failedFuture(re);
         }
+        return key.thenApplyAsync(ignored -> parse(jwt), executor);
+    }
 
-        final String rawHeader = jwt.substring(0, firstDot);
-        final JsonObject header = loadJson(rawHeader);
-        if (validateTyp && !getAttribute(header, "typ", defaultTyp).equalsIgnoreCase("jwt")) {
-            throw new JwtException("Invalid typ", HttpURLConnection.HTTP_UNAUTHORIZED);
+    private JsonWebToken parse(final CharSequence jwt, final ByteBuffer bytes) {
+        String raw = String.class.isInstance(jwt) ? String.class.cast(jwt) : null;
+        if (cacheTokens) {
+            if (raw == null) {
+                raw = jwt.toString();
+            }
+            final JsonWebToken cached = tokenCache.get(raw);
+            if (cached != null) {
+                return cached;
+            }
         }
 
-        final JsonObject payload = loadJson(jwt.substring(firstDot + 1, secondDot));
-        dateValidator.checkInterval(payload);
+        // read before the verification, the caches ignore what was computed with keys which changed since
+        final long keysVersion = cacheTokens || rejectionCache.isActive() ? kidMapper.getAllKeysVersion() : 0;
+        final boolean measured = metrics.isActive();
+        final long start = measured ? System.nanoTime() : 0;
+        final TokenVerificationEvent event = new TokenVerificationEvent();
+        event.begin();
+        final int length = jwt.length();
+        final byte[][] buffers = this.buffers.get();
+        ByteBuffer rejectionKey = null;
+        final ValidationContext context;
+        try {
+            if (rejectionCache.isActive()) {
+                final ByteBuffer key = rejectionCache.key(bytes != null ? bytes : toSigningInput(buffers, jwt, length));
+                rejectionCache.check(key);
+                rejectionKey = key;
+            }
+
+            final int firstDot = indexOf(jwt, 0, length);
+            if (firstDot < 0) {
+                throw new JwtException("JWT is not valid", HttpURLConnection.HTTP_BAD_REQUEST, Rejection.MALFORMED);
+            }
+            final int secondDot = indexOf(jwt, firstDot + 1, length);
+            if (secondDot < 0 || indexOf(jwt, secondDot + 1, length) > 0) {
+                throw new JwtException("JWT is not valid", HttpURLConnection.HTTP_BAD_REQUEST, Rejection.MALFORMED);
+            }
 
-        final String alg = getAttribute(header, "alg", defaultAlg);
-        final String kid = getAttribute(header, "kid", defaultKid);
-        final Collection<String> issuers = kidMapper.loadIssuers(kid);
-        if (!issuers.isEmpty() && issuers.stream().noneMatch(it -> it.equals(payload.getString(Claims.iss.name())))) {
-            throw new JwtException("Invalid issuer", HttpURLConnection.HTTP_UNAUTHORIZED);
+            try {
+                context = new ValidationContext(this, jwt, bytes, firstDot, secondDot, buffers);
+                pipeline.validate(context);
+            } catch (final JsonException je) { // header or payload is not a JSON object
+                final JwtException error = new JwtException("JWT is not valid", HttpURLConnection.HTTP_BAD_REQUEST, Rejection.MALFORMED);
+                error.initCause(je);
+                throw error;
+            }
+        } catch (final JwtException je) {
+            if (rejectionKey != null) {
+                rejectionCache.put(rejectionKey, je, keysVersion);
+            }
+            final Rejection rejection = je.getRejection();
+            if (measured) {
+                metrics.onRejection(rejection);
+            }
+            event.complete(null, null, length, rejection.name());
+            throw je;
         }
-        signatureValidator.verifySignature(alg, kidMapper.loadKey(kid), jwt.substring(0, secondDot), jwt.substring(secondDot + 1));
 
-        return createToken(jwt, payload);
+        final String rawToken = raw == null ? jwt.toString() : raw;
+        final GeronimoJsonWebToken token = context.createToken(rawToken);
+        if (cacheTokens) {
+            final JsonNumber exp = context.claims().getJsonNumber(Claims.exp.name());
+            if (exp != null) { // no exp means we can't know how long we can keep it
+                tokenCache.put(rawToken, token, exp.longValue(), keysVersion);
+            }
+        }
+        if (measured) {
+            metrics.onParse(context.getAlg(), System.nanoTime() - start);
+        }
+        event.complete(context.getAlg(), context.getKid(), length, "VALID");
+        return token;
     }
 
     public GeronimoJsonWebToken createToken(final String jwt, final JsonObject payload) {
         return new GeronimoJsonWebToken(jwt, payload);
     }
 
+    boolean isLazyClaims() {
+        return lazyClaims;
+    }
+
+    boolean isValidationClaim(final String name) {
+        return pipeline.getRequiredClaims().contains(name);
+    }
+
+    JsonReaderFactory getReaderFactory() {
+        return readerFactory;
+    }
+
     private String getAttribute(final JsonObject payload, final String key, final String def) {
         final JsonString json = payload.getJsonString(key);
         final String value = json != null ? json.getString() : def;
         if (value == null) {
-            throw new JwtException("No " + key + " in JWT", HttpURLConnection.HTTP_UNAUTHORIZED);
+            throw new JwtException("No " + key + " in JWT", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.MALFORMED);
         }
         return value;
     }
 
-    private JsonObject loadJson(final String src) {
-        return readerFactory.createReader(new ByteArrayInputStream(Base64.getUrlDecoder().decode(src))).readObject();
+    JwtHeader loadHeader(final CharSequence jwt, final int end, final byte[][] buffers) {
+        final int hash = headerCache == null ? 0 : JwtHeader.hash(jwt, end);
+        if (headerCache != null) {
+            final JwtHeader cached = headerCache.get(jwt, end, hash);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final TokenDecodeEvent event = new TokenDecodeEvent();
+        event.begin();
+        final byte[] bytes = buffer(buffers, HEADER, Base64Url.maxDecodedLength(end));
+        final JsonObject json = loadJson(bytes, decode(jwt, 0, end, bytes));
+        event.complete("header", end);
+        final JwtHeader header;
+        if (validateTyp && !getAttribute(json, "typ", defaultTyp).equalsIgnoreCase("jwt")) {
+            header = new JwtHeader(jwt.subSequence(0, end).toString(), false, null, null, null);
+        } else {
+            final String kid = getAttribute(json, "kid", defaultKid);
+            header = new JwtHeader(
+                    jwt.subSequence(0, end).toString(), true,
+                    getAttribute(json, "alg", defaultAlg), kid, kidMapper.loadIssuers(kid));
+        }
+        if (headerCache != null) {
+            headerCache.put(header, hash);
+        }
+        return header;
+    }
+
+    int decode(final CharSequence jwt, final int from, final int to, final byte[] buffer) {
+        final int length = Base64Url.decode(jwt, from, to, buffer);
+        if (length < 0) {
+            throw new JwtException("JWT is not valid", HttpURLConnection.HTTP_BAD_REQUEST, Rejection.MALFORMED);
+        }
+        return length;
+    }
+
+    JsonObject loadJson(final byte[] buffer, final int length) {
+        try (final JsonReader reader = readerFactory.createReader(new ByteArrayInputStream(buffer, 0, length))) {
+            return reader.readObject();
+        }
+    }
+
+    // only reads the claims the validation needs, the others are read from the payload when requested
+    JsonObject loadValidationClaims(final byte[] buffer, final int length) {
+        final JsonObjectBuilder builder = builderFactory.createObjectBuilder();
+        try (final JsonParser parser = parserFactory.createParser(new ByteArrayInputStream(buffer, 0, length))) {
+            if (!parser.hasNext() || parser.next() != JsonParser.Event.START_OBJECT) {
+                throw new JwtException("JWT is not valid", HttpURLConnection.HTTP_BAD_REQUEST, Rejection.MALFORMED);
+            }
+            while (parser.hasNext()) {
+                if (parser.next() != JsonParser.Event.KEY_NAME) { // END_OBJECT
+                    break;
+                }
+                final String name = parser.getString();
+                final JsonParser.Event value = parser.next();
+                if (isValidationClaim(name)) {
+                    builder.add(name, parser.getValue());
+                } else if (value == JsonParser.Event.START_OBJECT) {
+                    parser.skipObject();
+                } else if (value == JsonParser.Event.START_ARRAY) {
+                    parser.skipArray();
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static int indexOf(final CharSequence jwt, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (jwt.charAt(i) == '.') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // base64url and the dots are ascii so no need of a charset encoder there,
+    // any other char is rejected since truncating it would give the bytes of another (valid) token
+    static ByteBuffer toSigningInput(final byte[][] buffers, final CharSequence jwt, final int length) {
+        final byte[] target = buffer(buffers, SIGNING_INPUT, length);
+        for (int i = 0; i < length; i++) {
+            final char c = jwt.charAt(i);
+            if (c > 0x7F) {
+                throw new JwtException("JWT is not valid", HttpURLConnection.HTTP_BAD_REQUEST, Rejection.MALFORMED);
+            }
+            target[i] = (byte) c;
+        }
+        return ByteBuffer.wrap(target, 0, length);
+    }
+
+    // we don't retain huge (likely invalid) token buffers
+    static byte[] buffer(final byte[][] buffers, final int index, final int length) {
+        final byte[] buffer = buffers[index];
+        if (buffer.length >= length) {
+            return buffer;
+        }
+        final byte[] newBuffer = new byte[length];
+        if (length <= MAX_RETAINED_BUFFER_SIZE) {
+            buffers[index] = newBuffer;
+        }
+        return newBuffer;
+    }
+
+    // read only ascii view of a token buffer, avoids to copy it to find the segments and decode them
+    private static class AsciiSequence implements CharSequence {
+        private final ByteBuffer buffer;
+
+        private AsciiSequence(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int length() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return (char) (buffer.get(buffer.position() + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
     }
 }
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import javax.enterprise.inject.Vetoed;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+@Vetoed
+public final class JwtVerificationResult {
+    private final String rawToken;
+    private final JsonWebToken token;
+    private final JwtException error;
+
+    JwtVerificationResult(final String rawToken, final JsonWebToken token, final JwtException error) {
+        this.rawToken = rawToken;
+        this.token = token;
+        this.error = error;
+    }
+
+    public String getRawToken() {
+        return rawToken;
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    // null if the token is not valid
+    public JsonWebToken getToken() {
+        return token;
+    }
+
+    // null if the token is valid, Rejection.UNAVAILABLE (transient) when the token could not be verified (JWKS download failure for ex)
+    public JwtException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "JwtVerificationResult{valid=" + isValid() + (error != null ? ", error='" + error.getMessage() + "'" : "") + '}';
+    }
+}
@@ -17,13 +17,14 @@
 package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
 
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Optional.ofNullable;
-import static java.util.concurrent.TimeUnit.MINUTES;
-import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
 import org.apache.geronimo.microprofile.impl.jwtauth.io.PropertiesLoader;
+import org.apache.geronimo.microprofile.impl.jwtauth.jfr.KeyResolutionEvent;
+import org.apache.geronimo.microprofile.impl.jwtauth.metrics.GeronimoJwtAuthMetrics;
 import org.eclipse.microprofile.jwt.config.Names;
 
 import javax.annotation.PostConstruct;
@@ -31,32 +32,24 @@ import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
 import javax.json.JsonReaderFactory;
-import javax.json.JsonValue;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringReader;
-import java.net.URI;
 import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -68,17 +61,20 @@ public class KidMapper {
     @Inject
     private GeronimoJwtAuthConfig config;
 
-    private volatile ConcurrentMap<String, String> keyMapping = new ConcurrentHashMap<>();
+    @Inject
+    private GeronimoJwtAuthMetrics metrics;
+
+    private final ConcurrentMap<String, JwtKey> keyMapping = new ConcurrentHashMap<>();
     private final Map<String, Collection<String>> issuerMapping = new HashMap<>();
     private String defaultKey;
-    private String jwksUrl;
-    private String defaultKid;
-    private int refreshInterval;
+    private JwtKey defaultJwtKey;
     private Set<String> defaultIssuers;
-    private JsonReaderFactory readerFactory;
-    private CompletableFuture<Void> reloadJwksRequest;
-    private HttpClient httpClient;
-    ScheduledExecutorService backgroundThread;
+    private JwksSource jwks;
+    // issuer -> its own JWKS, tokens of these issuers are only verified with these keys
+    private final Map<String, JwksSource> jwksByIssuer = new HashMap<>();
+    private final Map<String, JwksSource> jwksByName = new TreeMap<>();
+    private KidMapperJmx jmx;
+
     @PostConstruct
     private void init() {
         ofNullable(config.read("kids.key.mapping", null))
@@ -86,7 +82,7 @@ public class KidMapper {
                 .filter(s -> !s.isEmpty())
                 .map(PropertiesLoader::load)
                 .ifPresent(props -> props.stringPropertyNames()
-                        .forEach(k -> keyMapping.put(k, loadKey(props.getProperty(k)))));
+                        .forEach(k -> keyMapping.put(k, new JwtKey(k, loadKey(props.getProperty(k))))));
         ofNullable(config.read("kids.issuer.mapping", null))
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
@@ -105,35 +101,42 @@ public class KidMapper {
                                     .collect(Collectors.toSet()))
                                 .orElseGet(HashSet::new);
         ofNullable(config.read("issuer.default", config.read(Names.ISSUER, null))).ifPresent(defaultIssuers::add);
-        defaultKid = config.read("jwt.header.kid.default", null);
-        jwksUrl = config.read("mp.jwt.verify.publickey.location", null);
-        refreshInterval = Integer.parseInt(config.read("jwks.invalidation.interval","0"));
-        readerFactory = Json.createReaderFactory(emptyMap());
-        ofNullable(jwksUrl).ifPresent(url -> {
-            HttpClient.Builder builder = HttpClient.newBuilder();
-            customize(builder);
-            backgroundThread = newExecutor();
-            if (refreshInterval > 0) {
-                builder.executor(backgroundThread);
-                backgroundThread.scheduleAtFixedRate(() -> reloadRemoteKeys(backgroundThread), refreshInterval, refreshInterval, SECONDS);
-            }
-            httpClient = builder.build();
-            reloadJwksRequest = reloadRemoteKeys(backgroundThread);// inital load, otherwise the background thread is too slow to start and serve
-            if (refreshInterval <= 0) {
-                reloadJwksRequest.thenRunAsync(() -> {
-                    if (httpClient instanceof AutoCloseable) {
-                        try {
-                            ((AutoCloseable) httpClient).close();
-                        } catch (Exception e) {
-                            // ignore
-                        }
-                    }
-                    httpClient = null;
-                    destroy();
-                }, backgroundThread);
-            }
+        final String defaultKid = config.read("jwt.header.kid.default", null);
+        final JsonReaderFactory readerFactory = Json.createReaderFactory(emptyMap());
+        ofNullable(config.read("mp.jwt.verify.publickey.location", null)).ifPresent(url -> {
+            jwks = new JwksSource(this, "default", url, defaultKid, readerFactory, metrics, (key, def) -> config.read("jwks." + key, def));
+            jwks.start();
         });
+        ofNullable(config.read("jwks.sources", null))
+                .map(s -> Stream.of(s.split(","))
+                        .map(String::trim)
+                        .filter(it -> !it.isEmpty())
+                        .collect(toList()))
+                .ifPresent(names -> names.forEach(name -> {
+                    final String prefix = "jwks.sources." + name + '.';
+                    final String issuer = config.read(prefix + "issuer", null);
+                    final String url = config.read(prefix + "location", null);
+                    if (issuer == null || url == null) {
+                        throw new IllegalArgumentException("Missing " + prefix + "issuer or " + prefix + "location");
+                    }
+                    if ("default".equals(name)) { // metrics name of mp.jwt.verify.publickey.location
+                        throw new IllegalArgumentException("'default' can't be used as a jwks.sources name");
+                    }
+                    // the snapshot is a file per JWKS so its path is never inherited
+                    final JwksSource source = new JwksSource(this, name, url, defaultKid, readerFactory, metrics, (key, def) ->
+                            config.read(prefix + key, "snapshot.path".equals(key) ? def : config.read("jwks." + key, def)));
+                    if (jwksByIssuer.putIfAbsent(issuer, source) != null) {
+                        throw new IllegalArgumentException("Issuer '" + issuer + "' is mapped to multiple JWKS");
+                    }
+                    jwksByName.put(name, source);
+                    defaultIssuers.add(issuer);
+                    source.start();
+                }));
         defaultKey = config.read("public-key.default", config.read(Names.VERIFIER_PUBLIC_KEY, null));
+        defaultJwtKey = defaultKey == null ? null : new JwtKey(null, defaultKey);
+        if (Boolean.parseBoolean(config.read("kids.jmx.active", "false"))) {
+            jmx = new KidMapperJmx(this, config.read("kids.jmx.name", "jwt-auth"));
+        }
     }
 
     protected ScheduledExecutorService newExecutor() {
@@ -144,41 +147,243 @@ public class KidMapper {
         // for overwriting, e.g. sslContext + sslParameters
     }
 
+    // downloads the default JWKS (mp.jwt.verify.publickey.location)
     protected CompletableFuture<Void> reloadRemoteKeys(Executor executor) {
-        HttpRequest request = HttpRequest.newBuilder().GET().uri(URI.create(jwksUrl)).header("Accept", "application/json").build();
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenAcceptAsync(this::reloadRemoteKeys, executor);
+        return jwks.reload(executor);
+    }
+
+    CompletableFuture<Void> reloadRemoteKeys(final JwksSource source, final Executor executor) {
+        return source == jwks ? reloadRemoteKeys(executor) : source.reload(executor);
+    }
+
+    // forces a download of all the JWKS, returns once the new keys are used, used by JMX
+    public void refresh() {
+        if (jwks == null && jwksByName.isEmpty()) {
+            throw new IllegalStateException("No JWKS configured (mp.jwt.verify.publickey.location or jwks.sources)");
+        }
+        if (jwks != null) {
+            jwks.refresh();
+        }
+        jwksByName.values().forEach(JwksSource::refresh);
+    }
+
+    // forces a download of a single jwks.sources entry, used by JMX
+    public void refresh(final String source) {
+        final JwksSource jwksSource = jwksByName.get(source);
+        if (jwksSource == null) {
+            throw new IllegalArgumentException("No JWKS source '" + source + "', available: " + jwksByName.keySet());
+        }
+        jwksSource.refresh();
+    }
+
+    // current kid mapping (read only), keys of the issuer specific JWKS are prefixed by their source name
+    public Map<String, JwtKey> getKeys() {
+        if (jwks == null && jwksByName.isEmpty()) {
+            return unmodifiableMap(keyMapping);
+        }
+        final Map<String, JwtKey> keys = new HashMap<>(keyMapping);
+        if (jwks != null) {
+            keys.putAll(jwks.getKeys());
+        }
+        jwksByName.forEach((name, source) -> source.getKeys().forEach((kid, key) -> keys.put(name + '/' + kid, key)));
+        return unmodifiableMap(keys);
+    }
+
+    // jwks.sources entries by name, their refresh statistics are not part of the getters below
+    Map<String, JwksSource> getJwksSources() {
+        return unmodifiableMap(jwksByName);
+    }
+
+    // refresh statistics are the default JWKS (mp.jwt.verify.publickey.location) ones, see getJwksSources()
+    public int getRefreshInterval() {
+        return jwks == null ? 0 : jwks.getRefreshInterval();
+    }
+
+    public long getRefreshCount() {
+        return jwks == null ? 0 : jwks.getRefreshCount();
+    }
+
+    public long getLastRefreshSuccess() {
+        return jwks == null ? 0 : jwks.getLastRefreshSuccess();
+    }
+
+    public long getLastRefreshFailure() {
+        return jwks == null ? 0 : jwks.getLastRefreshFailure();
+    }
+
+    public String getLastRefreshError() {
+        return jwks == null ? null : jwks.getLastRefreshError();
+    }
+
+    public long getLastRefreshDuration() {
+        return jwks == null ? 0 : jwks.getLastRefreshDuration();
+    }
+
+    public long getMaxRefreshDuration() {
+        return jwks == null ? 0 : jwks.getMaxRefreshDuration();
+    }
+
+    // changes each time the remote keys change, enables to cache what is computed from the keys
+    public long getKeysVersion() {
+        return jwks == null ? 0 : jwks.getKeysVersion();
+    }
+
+    // changes when the keys of any JWKS change (the default one or jwks.sources)
+    long getAllKeysVersion() {
+        long version = jwks == null ? 0 : jwks.getKeysVersion();
+        for (final JwksSource source : jwksByName.values()) {
+            version += source.getKeysVersion(); // versions only grow so the sum changes with any of them
+        }
+        return version;
+    }
+
+    // the JWKS dedicated to this issuer if there is one (jwks.sources)
+    JwksSource findIssuerJwks(final String issuer) {
+        return issuer == null || jwksByIssuer.isEmpty() ? null : jwksByIssuer.get(issuer);
+    }
+
+    boolean hasIssuerJwks() {
+        return !jwksByIssuer.isEmpty();
     }
 
-    private void reloadRemoteKeys(HttpResponse<String> response) {
-        List<JWK> jwks = parseKeys(response);
-        ConcurrentHashMap<String, String> newKeys = new ConcurrentHashMap<>();
-        jwks.forEach(key -> ofNullable(key.getKid()).ifPresent(kid -> newKeys.put(kid, key.toPemKey())));
-        if (newKeys.isEmpty() && defaultKid != null && jwks.size() == 1) {
-            // use default key
-            newKeys.put(defaultKid, jwks.get(0).toPemKey());
+    // a kid of an issuer specific JWKS, never falls back on another key since the kids of two issuers can collide
+    JwtKey loadIssuerJwtKey(final JwksSource source, final String kid) {
+        final KeyResolutionEvent event = new KeyResolutionEvent();
+        event.begin();
+        JwtKey key = source.getKey(kid);
+        if (key != null) {
+            event.complete(kid, "hit", false);
+            return key;
         }
-        keyMapping = newKeys;
+        final boolean jwksWait = source.awaitInitialLoad() || source.awaitUnknownKid();
+        key = source.getKey(kid);
+        event.complete(kid, key == null ? "none" : "jwks", jwksWait);
+        return key;
     }
 
     public String loadKey(final String property) {
-        String value = keyMapping.get(property);
+        return loadJwtKey(property).getValue();
+    }
+
+    public JwtKey loadJwtKey(final String property) {
+        return loadJwtKey(property, true);
+    }
+
+    private JwtKey loadJwtKey(final String property, final boolean refreshUnknown) {
+        final KeyResolutionEvent event = new KeyResolutionEvent();
+        event.begin();
+        JwtKey key = findKey(property);
+        if (key != null) {
+            event.complete(property, "hit", false);
+            return key;
+        }
+
+        String source = "file";
+        String value = readFile(property);
         if (value == null) {
-            value = tryLoad(property);
-            if (value != null && !property.equals(value) /* else we can leak easily*/) {
-                keyMapping.putIfAbsent(property, value);
-            } else if (defaultKey != null) {
-                value = defaultKey;
+            source = "classpath";
+            value = readResource(property);
+        }
+        boolean jwksWait = false;
+        if (value == null) {
+            source = "jwks";
+            value = property;
+            jwksWait = jwks != null && jwks.awaitInitialLoad();
+            if (refreshUnknown && !jwksWait && jwks != null && jwks.getKey(property) == null) {
+                jwksWait = jwks.awaitUnknownKid();
+            }
+        }
+        key = jwks == null ? null : jwks.getKey(property); // loaded from the JWKS
+        if (key == null) {
+            key = keyMapping.get(property);
+        }
+        if (key == null) {
+            if (!property.equals(value) /* else we can leak easily*/) {
+                key = new JwtKey(property, value);
+                final JwtKey existing = keyMapping.putIfAbsent(property, key);
+                if (existing != null) {
+                    key = existing;
+                }
+            } else if (defaultJwtKey != null) {
+                source = "default";
+                key = defaultJwtKey;
+            } else {
+                source = "none";
+                key = new JwtKey(property, value);
             }
+        } else {
+            source = "jwks";
         }
-        return value;
+        event.complete(property, source, jwksWait);
+        return key;
+    }
+
+    // the JWKS wins over the local mapping as before the JWKS replaced the whole mapping
+    private JwtKey findKey(final String kid) {
+        if (jwks != null) {
+            final JwtKey key = jwks.getKey(kid);
+            if (key != null) {
+                return key;
+            }
+        }
+        return keyMapping.get(kid);
+    }
+
+    // same as loadKey but never waits for the initial JWKS loading, the stage completes once it is done
+    public CompletionStage<String> loadKeyAsync(final String property) {
+        final JwtKey value = findKey(property);
+        if (value != null && jwksByIssuer.isEmpty()) {
+            return CompletableFuture.completedFuture(value.getValue());
+        }
+        // the issuer is not known yet so all the JWKS must be loaded to not block when the signature is verified
+        CompletableFuture<Void> pending = jwks == null ? null : jwks.getInitialLoad();
+        for (final JwksSource source : jwksByName.values()) {
+            final CompletableFuture<Void> load = source.getInitialLoad();
+            if (load != null) {
+                pending = pending == null ?
+                        load.exceptionally(error -> null) :
+                        CompletableFuture.allOf(pending, load.exceptionally(error -> null));
+            }
+        }
+        if (pending == null) {
+            if (value != null) {
+                return CompletableFuture.completedFuture(value.getValue());
+            }
+            pending = jwks == null || isLocalKey(property) ? null : jwks.refreshUnknownKid();
+            if (pending == null) {
+                try {
+                    return CompletableFuture.completedFuture(loadKey(property));
+                } catch (final RuntimeException re) {
+                    return CompletableFuture.failedFuture(re);
+                }
+            }
+            // a failed refresh keeps the current keys
+            pending = pending.exceptionally(error -> null);
+        }
+        // the continuation can run in the http client threads so ensure resources are looked up in the caller loader
+        // and never wait there for another download (the background thread would wait for itself)
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return pending.thenApply(ignored -> {
+            final Thread thread = Thread.currentThread();
+            final ClassLoader old = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            try {
+                return loadJwtKey(property, false).getValue();
+            } finally {
+                thread.setContextClassLoader(old);
+            }
+        });
     }
 
     public Collection<String> loadIssuers(final String property) {
         return issuerMapping.getOrDefault(property, defaultIssuers);
     }
 
-    private String tryLoad(final String value) {
-        // try external file
+    private boolean isLocalKey(final String value) {
+        return new File(value).exists() || Thread.currentThread().getContextClassLoader().getResource(value) != null;
+    }
+
+    private String readFile(final String value) {
         final File file = new File(value);
         if (file.exists()) {
             try {
@@ -187,8 +392,10 @@ public class KidMapper {
                 throw new IllegalArgumentException(e);
             }
         }
+        return null;
+    }
 
-        // if not found try classpath resource
+    private String readResource(final String value) {
         try (final InputStream stream = Thread.currentThread().getContextClassLoader()
                 .getResourceAsStream(value)) {
             if (stream != null) {
@@ -197,52 +404,17 @@ public class KidMapper {
         } catch (final IOException e) {
             throw new IllegalArgumentException(e);
         }
-
-        // load jwks via url
-        if (jwksUrl != null) {
-            try {
-                if (reloadJwksRequest != null && !reloadJwksRequest.isDone()) {
-                    reloadJwksRequest.get();
-                    reloadJwksRequest = null;
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            } catch (ExecutionException e) {
-                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
-            }
-            String key = keyMapping.get(value);
-            if (key != null) {
-                return key;
-            }
-        }
-        return value;
-    }
-
-    private List<JWK> parseKeys(HttpResponse<String> keyResponse) {
-        try (final JsonReader reader = readerFactory.createReader(new StringReader(keyResponse.body()))) {
-            JsonObject keySet = reader.readObject();
-            JsonArray keys = keySet.getJsonArray("keys");
-            return keys.stream()
-                    .map(JsonValue::asJsonObject)
-                    .map(JWK::new)
-                    .filter(it -> it.getUse() == null || "sig".equals(it.getUse()))
-                    .collect(toList());
-        }
+        return null;
     }
 
     @PreDestroy
     private void destroy() {
-        if (reloadJwksRequest != null && !reloadJwksRequest.isDone()) {
-            reloadJwksRequest.cancel(true);
+        if (jmx != null) {
+            jmx.close();
         }
-        if (backgroundThread != null) {
-            backgroundThread.shutdownNow();
-            try {
-                backgroundThread.awaitTermination(1, MINUTES);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
+        if (jwks != null) {
+            jwks.stop();
         }
+        jwksByName.values().forEach(JwksSource::stop);
     }
-
 }
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.enterprise.inject.Vetoed;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+@Vetoed
+class KidMapperJmx implements KidMapperMXBean, AutoCloseable {
+    private final KidMapper mapper;
+    private final ObjectName name;
+
+    KidMapperJmx(final KidMapper mapper, final String name) {
+        this.mapper = mapper;
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("org.apache.geronimo.microprofile.jwtauth:type=kid-mapper,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) { // another application of the JVM uses the same name
+                objectName = new ObjectName(objectName + ",instance=" + System.identityHashCode(this));
+            }
+            server.registerMBean(this, objectName);
+            this.name = objectName;
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Map<String, String> getKids() {
+        final Map<String, String> kids = new TreeMap<>();
+        mapper.getKeys().forEach((kid, key) -> {
+            final String thumbprint = key.getThumbprint();
+            kids.put(kid, thumbprint == null ? "-" : thumbprint);
+        });
+        return kids;
+    }
+
+    @Override
+    public long getKeysVersion() {
+        return mapper.getKeysVersion();
+    }
+
+    @Override
+    public int getRefreshInterval() {
+        return mapper.getRefreshInterval();
+    }
+
+    @Override
+    public long getRefreshCount() {
+        return mapper.getRefreshCount();
+    }
+
+    @Override
+    public long getLastRefreshSuccess() {
+        return mapper.getLastRefreshSuccess();
+    }
+
+    @Override
+    public long getLastRefreshFailure() {
+        return mapper.getLastRefreshFailure();
+    }
+
+    @Override
+    public String getLastRefreshError() {
+        return mapper.getLastRefreshError();
+    }
+
+    @Override
+    public long getLastRefreshDuration() {
+        return mapper.getLastRefreshDuration();
+    }
+
+    @Override
+    public long getMaxRefreshDuration() {
+        return mapper.getMaxRefreshDuration();
+    }
+
+    @Override
+    public Map<String, JwksSourceStats> getSources() {
+        final Map<String, JwksSourceStats> sources = new TreeMap<>();
+        mapper.getJwksSources().forEach((name, source) -> sources.put(name, new JwksSourceStats(source)));
+        return sources;
+    }
+
+    @Override
+    public void refresh() {
+        mapper.refresh();
+    }
+
+    @Override
+    public void refreshSource(final String name) {
+        mapper.refresh(name);
+    }
+
+    @Override
+    public void close() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (final Exception e) {
+            // no-op
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.util.Map;
+
+// dates are epoch milliseconds (0 when it never happened), durations are in milliseconds
+public interface KidMapperMXBean {
+    // kid -> SHA-256 thumbprint (base64url) of the public key, "-" for secrets, key material is never exposed
+    Map<String, String> getKids();
+
+    long getKeysVersion();
+
+    int getRefreshInterval();
+
+    long getRefreshCount();
+
+    long getLastRefreshSuccess();
+
+    long getLastRefreshFailure();
+
+    String getLastRefreshError();
+
+    long getLastRefreshDuration();
+
+    long getMaxRefreshDuration();
+
+    // the attributes above are the default JWKS (mp.jwt.verify.publickey.location) ones, jwks.sources are there by name
+    Map<String, JwksSourceStats> getSources();
+
+    // downloads all the JWKS again and returns once the new keys are used
+    void refresh();
+
+    // downloads the JWKS of a single jwks.sources entry again and returns once the new keys are used
+    void refreshSource(String name);
+}
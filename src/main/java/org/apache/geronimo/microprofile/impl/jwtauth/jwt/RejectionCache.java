@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+
+// remembers recently rejected tokens (by digest to not retain them) to reject a replayed one without decoding/verifying it
+@ApplicationScoped
+public class RejectionCache {
+    @Inject
+    private GeronimoJwtAuthConfig config;
+
+    @Inject
+    private KidMapper kidMapper;
+
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private boolean active;
+    private long ttl;
+    private long transientTtl;
+    private ExpiringCache<ByteBuffer, Entry> cache;
+
+    @PostConstruct
+    private void init() {
+        active = Boolean.parseBoolean(config.read("rejection.cache.active", "false"));
+        if (active) {
+            ttl = Long.parseLong(config.read("rejection.cache.ttl", "300"));
+            transientTtl = Long.parseLong(config.read("rejection.cache.transient-ttl", "5"));
+            final int maxSize = Integer.parseInt(config.read("rejection.cache.max-size", "10000"));
+            cache = new ExpiringCache<>(maxSize, (long) maxSize * Entry.WEIGHT);
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    // the buffer content (position to limit) is the token, it is not modified
+    ByteBuffer key(final ByteBuffer token) {
+        final MessageDigest digest = digests.get();
+        digest.update(token.duplicate());
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    // a rejection computed with keys which changed since (rotation, new kid) is verified again
+    void check(final ByteBuffer key) {
+        final Entry rejection = cache.get(key, now());
+        if (rejection != null && rejection.keysVersion == kidMapper.getAllKeysVersion()) {
+            throw new JwtException(rejection.message, rejection.status, rejection.rejection);
+        }
+    }
+
+    // keysVersion is the KidMapper#getAllKeysVersion() read before the verification
+    void put(final ByteBuffer key, final JwtException error, final long keysVersion) {
+        if (keysVersion != kidMapper.getAllKeysVersion()) { // keys changed during the verification
+            return;
+        }
+        final long now = now();
+        final long expiresAt = now + (error.getRejection().isTransient() ? transientTtl : ttl);
+        cache.put(key, new Entry(error.getMessage(), error.getStatus(), error.getRejection(), keysVersion), expiresAt, Entry.WEIGHT, now);
+    }
+
+    public void clear() {
+        if (active) {
+            cache.clear();
+        }
+    }
+
+    public long getHits() {
+        return active ? cache.getHits() : 0;
+    }
+
+    public long getMisses() {
+        return active ? cache.getMisses() : 0;
+    }
+
+    public int getSize() {
+        return active ? cache.size() : 0;
+    }
+
+    private long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static final class Entry {
+        // the digest, the message is generally a shared constant, and the entry overhead
+        private static final long WEIGHT = 128;
+
+        private final String message;
+        private final int status;
+        private final Rejection rejection;
+        private final long keysVersion;
+
+        private Entry(final String message, final int status, final Rejection rejection, final long keysVersion) {
+            this.message = message;
+            this.status = status;
+            this.rejection = rejection;
+            this.keysVersion = keysVersion;
+        }
+    }
+}
@@ -19,12 +19,13 @@ package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
 import static java.util.stream.Collectors.toSet;
 
 import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.spec.X509EncodedKeySpec;
-import java.util.Arrays;
 import java.util.Base64;
 import java.util.Locale;
 import java.util.Set;
@@ -33,24 +34,38 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Stream;
 
 import javax.annotation.PostConstruct;
-import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
 import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+import org.apache.geronimo.microprofile.impl.jwtauth.jfr.SignatureVerificationEvent;
+import org.apache.geronimo.microprofile.impl.jwtauth.metrics.GeronimoJwtAuthMetrics;
 
 @ApplicationScoped
 public class SignatureValidator {
     @Inject
     private GeronimoJwtAuthConfig config;
 
+    @Inject
+    private KidMapper kidMapper;
+
+    @Inject
+    private GeronimoJwtAuthMetrics metrics;
+
     private Set<String> supportedAlgorithms;
     private String jcaProvider;
     private boolean useCache;
+    // only for configured keys, JWKS keys are already parsed
     private final ConcurrentMap<String, PublicKey> publicKeyCache = new ConcurrentHashMap<>();
+    private volatile Verifiers verifiers = new Verifiers(-1);
+    // issuer -> verifiers of its own JWKS (jwks.sources)
+    private final ConcurrentMap<String, Verifiers> issuerVerifiers = new ConcurrentHashMap<>();
+    private int verifiersMaxSize;
+    private int verifierPoolSize;
 
     @PostConstruct
     private void init() {
@@ -61,116 +76,253 @@ public class SignatureValidator {
                 .filter(s -> !s.isEmpty())
                 .collect(toSet());
         jcaProvider = config.read("jca.provider", null);
+        verifiersMaxSize = Integer.parseInt(config.read("verifier.cache.max-size", "64"));
+        verifierPoolSize = Integer.parseInt(config.read("verifier.pool.size", Integer.toString(Runtime.getRuntime().availableProcessors() * 2)));
     }
 
     public void verifySignature(final String alg, final String key, final String signingString, final String expected) {
+        final byte[] signature;
+        try {
+            signature = Base64.getUrlDecoder().decode(expected);
+        } catch (final IllegalArgumentException iae) {
+            invalidSignature();
+            return;
+        }
+        verifySignature(alg, key, ByteBuffer.wrap(signingString.getBytes(StandardCharsets.UTF_8)), signature, signature.length);
+    }
+
+    public void verifySignature(final String alg, final String key, final ByteBuffer signingInput,
+                                final byte[] signature, final int signatureLength) {
+        verify(newVerifier(alg, new JwtKey(null, key), 0), signingInput, signature, signatureLength);
+    }
+
+    // same as verifySignature but the key is resolved from the kid and the verifier is reused while the keys don't change
+    public void verifyWithKid(final String alg, final String kid, final ByteBuffer signingInput,
+                              final byte[] signature, final int signatureLength) {
+        verifyWithKid(alg, null, kid, signingInput, signature, signatureLength);
+    }
+
+    // when the issuer has its own JWKS the kid is only resolved there, else it is the same as without issuer
+    public void verifyWithKid(final String alg, final String issuer, final String kid, final ByteBuffer signingInput,
+                              final byte[] signature, final int signatureLength) {
+        final JwksSource source = kidMapper.findIssuerJwks(issuer);
+        final Verifier<?> verifier = source == null ? findVerifier(alg, kid) : findIssuerVerifier(alg, issuer, source, kid);
+        final SignatureVerificationEvent event = new SignatureVerificationEvent();
+        event.begin();
+        try {
+            verify(verifier, signingInput, signature, signatureLength);
+        } catch (final JwtException je) {
+            event.complete(alg, kid, verifier.getKeySize(), false);
+            throw je;
+        }
+        event.complete(alg, kid, verifier.getKeySize(), true);
+    }
+
+    private Verifier<?> findVerifier(final String alg, final String kid) {
+        if (verifiersMaxSize <= 0) {
+            return newVerifier(alg, kidMapper.loadJwtKey(kid), 0);
+        }
+
+        final long version = kidMapper.getKeysVersion();
+        Verifiers current = verifiers;
+        if (current.keysVersion != version) { // keys changed, forget the verifiers built with the previous ones
+            current = new Verifiers(version);
+            verifiers = current;
+        }
+        final Verifier<?> existing = current.byKid.get(kid);
+        if (existing != null && existing.matches(alg)) {
+            if (metrics.isActive()) {
+                metrics.onKeyLookup(true);
+            }
+            return existing;
+        }
+        if (metrics.isActive()) {
+            metrics.onKeyLookup(false);
+        }
+
+        final Verifier<?> verifier = newVerifier(alg, kidMapper.loadJwtKey(kid), verifierPoolSize);
+        if (current.byKid.size() >= verifiersMaxSize) { // an unmapped kid can be used as a HMAC secret so don't grow forever
+            current.byKid.clear();
+        }
+        current.byKid.put(kid, verifier);
+        return verifier;
+    }
+
+    private Verifier<?> findIssuerVerifier(final String alg, final String issuer, final JwksSource source, final String kid) {
+        if (verifiersMaxSize <= 0) {
+            return newVerifier(alg, loadIssuerJwtKey(source, kid), 0);
+        }
+
+        final long version = source.getKeysVersion();
+        Verifiers current = issuerVerifiers.get(issuer);
+        if (current == null || current.keysVersion != version) {
+            current = new Verifiers(version);
+            issuerVerifiers.put(issuer, current);
+        }
+        final Verifier<?> existing = current.byKid.get(kid);
+        if (existing != null && existing.matches(alg)) {
+            if (metrics.isActive()) {
+                metrics.onKeyLookup(true);
+            }
+            return existing;
+        }
+        if (metrics.isActive()) {
+            metrics.onKeyLookup(false);
+        }
+
+        final Verifier<?> verifier = newVerifier(alg, loadIssuerJwtKey(source, kid), verifierPoolSize);
+        if (current.byKid.size() >= verifiersMaxSize) {
+            current.byKid.clear();
+        }
+        current.byKid.put(kid, verifier);
+        return verifier;
+    }
+
+    // an unknown kid never falls back on another key, the key of another issuer could be used else
+    private JwtKey loadIssuerJwtKey(final JwksSource source, final String kid) {
+        final JwtKey key = kid == null ? null : kidMapper.loadIssuerJwtKey(source, kid);
+        if (key == null) {
+            throw new JwtException("Invalid signing", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.UNKNOWN_KID);
+        }
+        return key;
+    }
+
+    boolean isIssuerRouted() {
+        return kidMapper.hasIssuerJwks();
+    }
+
+    private Verifier<?> newVerifier(final String alg, final JwtKey key, final int poolSize) {
         final String normalizedAlg = alg.toLowerCase(Locale.ROOT);
         if (!supportedAlgorithms.contains(normalizedAlg)) {
-            throw new JwtException("Unsupported algorithm", HttpURLConnection.HTTP_UNAUTHORIZED);
+            throw new JwtException("Unsupported algorithm", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.ALGORITHM);
+        }
+        if (key.getAlg() != null && !key.getAlg().equalsIgnoreCase(alg)) { // the key is restricted to another algorithm
+            throw new JwtException("Invalid signing", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.KEY);
         }
         switch (normalizedAlg) {
             case "rs256":
-                verifySignature(toPublicKey(key, "RSA"), signingString, expected, "SHA256withRSA");
-                break;
+                return new Verifier.PublicKeyVerifier(alg, poolSize, toPublicKey(key, "RSA"), "SHA256withRSA", jcaProvider);
             case "rs384":
-                verifySignature(toPublicKey(key, "RSA"), signingString, expected, "SHA384withRSA");
-                break;
+                return new Verifier.PublicKeyVerifier(alg, poolSize, toPublicKey(key, "RSA"), "SHA384withRSA", jcaProvider);
             case "rs512":
-                verifySignature(toPublicKey(key, "RSA"), signingString, expected, "SHA512withRSA");
-                break;
+                return new Verifier.PublicKeyVerifier(alg, poolSize, toPublicKey(key, "RSA"), "SHA512withRSA", jcaProvider);
             case "hs256":
-                verifyMac(toSecretKey(key, "HmacSHA256"), signingString, expected);
-                break;
+                return new Verifier.MacVerifier(alg, poolSize, toSecretKey(key, "HmacSHA256"), jcaProvider);
             case "hs384":
-                verifyMac(toSecretKey(key, "HmacSHA384"), signingString, expected);
-                break;
+                return new Verifier.MacVerifier(alg, poolSize, toSecretKey(key, "HmacSHA384"), jcaProvider);
             case "hs512":
-                verifyMac(toSecretKey(key, "HmacSHA512"), signingString, expected);
-                break;
+                return new Verifier.MacVerifier(alg, poolSize, toSecretKey(key, "HmacSHA512"), jcaProvider);
             case "es256":
-                verifySignature(toPublicKey(key, "EC"), signingString, expected, "SHA256withECDSA");
-                break;
+                return newEcdsaVerifier(alg, poolSize, toPublicKey(key, "EC"), "SHA256withECDSA", 32);
             case "es384":
-                verifySignature(toPublicKey(key, "EC"), signingString, expected, "SHA384withECDSA");
-                break;
+                return newEcdsaVerifier(alg, poolSize, toPublicKey(key, "EC"), "SHA384withECDSA", 48);
             case "es512":
-                verifySignature(toPublicKey(key, "EC"), signingString, expected, "SHA512withECDSA");
-                break;
+                return newEcdsaVerifier(alg, poolSize, toPublicKey(key, "EC"), "SHA512withECDSA", 66);
+            case "eddsa":
+                return new Verifier.EdDsaVerifier(alg, poolSize, toPublicKey(key, "EdDSA"), jcaProvider);
             default:
                 throw new IllegalArgumentException("Unsupported algorithm: " + normalizedAlg);
         }
     }
 
-    private SecretKey toSecretKey(final String key, final String algo) {
-        return new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), algo);
+    // JWS signatures are R|S, the JDK (11+) provider accepts it directly, else we convert them to DER
+    private Verifier<?> newEcdsaVerifier(final String alg, final int poolSize, final PublicKey key,
+                                         final String algorithm, final int componentLength) {
+        final String p1363 = algorithm + "inP1363Format";
+        try {
+            if (jcaProvider == null) {
+                Signature.getInstance(p1363);
+            } else {
+                Signature.getInstance(p1363, jcaProvider);
+            }
+            return new Verifier.PublicKeyVerifier(alg, poolSize, key, p1363, jcaProvider);
+        } catch (final GeneralSecurityException e) {
+            return new Verifier.EcdsaDerVerifier(alg, poolSize, key, algorithm, jcaProvider, componentLength);
+        }
+    }
+
+    private void verify(final Verifier<?> verifier, final ByteBuffer signingInput,
+                        final byte[] signature, final int signatureLength) {
+        boolean valid;
+        try {
+            valid = verifier.verify(signingInput, signature, signatureLength);
+        } catch (final Exception e) {
+            valid = false;
+        }
+        if (!valid) {
+            invalidSignature();
+        }
+    }
+
+    // a parsed (public) key is never used as a HMAC secret
+    private SecretKey toSecretKey(final JwtKey key, final String algo) {
+        if (key.getKey() != null) {
+            throw new JwtException("Invalid signing", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.KEY);
+        }
+        return new SecretKeySpec(key.getValue().getBytes(StandardCharsets.UTF_8), algo);
     }
 
-    private PublicKey toPublicKey(final String key, final String algo) {
+    private PublicKey toPublicKey(final JwtKey key, final String algo) {
+        if (key.getKey() == null) {
+            // an unmapped kid is its own value (see KidMapper), it can be a key rotation not yet visible in the JWKS
+            return toPublicKey(key.getValue(), algo, key.getValue().equals(key.getKid()) ? Rejection.UNKNOWN_KID : Rejection.KEY);
+        }
+        if (!PublicKey.class.isInstance(key.getKey()) || !isKeyAlgorithm(algo, key.getKey().getAlgorithm())) {
+            throw new JwtException("Invalid signing", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.KEY);
+        }
+        return PublicKey.class.cast(key.getKey());
+    }
+
+    private PublicKey toPublicKey(final String key, final String algo, final Rejection rejection) {
         PublicKey publicKey = useCache ? publicKeyCache.get(key) : null;
         if (publicKey == null) {
-            final byte[] decoded = Base64.getDecoder().decode(key
-                    .replace("-----BEGIN RSA KEY-----", "")
-                    .replace("-----END RSA KEY-----", "")
-                    .replace("-----BEGIN PUBLIC KEY-----", "")
-                    .replace("-----END PUBLIC KEY-----", "")
-                    .replace("-----BEGIN RSA PUBLIC KEY-----", "")
-                    .replace("-----END RSA PUBLIC KEY-----", "")
-                    .replace("\n", "")
-                    .trim());
             try {
+                final byte[] decoded = Base64.getDecoder().decode(key
+                        .replace("-----BEGIN RSA KEY-----", "")
+                        .replace("-----END RSA KEY-----", "")
+                        .replace("-----BEGIN PUBLIC KEY-----", "")
+                        .replace("-----END PUBLIC KEY-----", "")
+                        .replace("-----BEGIN RSA PUBLIC KEY-----", "")
+                        .replace("-----END RSA PUBLIC KEY-----", "")
+                        .replace("\n", "")
+                        .trim());
                 switch (algo) {
-                    case "RSA": {
-                        final X509EncodedKeySpec keySpec = new X509EncodedKeySpec(decoded);
-                        final KeyFactory keyFactory = KeyFactory.getInstance(algo);
-                        publicKey = keyFactory.generatePublic(keySpec);
+                    case "RSA":
+                    case "EC":
+                    case "EdDSA":
+                        publicKey = KeyFactory.getInstance(algo).generatePublic(new X509EncodedKeySpec(decoded));
                         if (useCache) {
                             publicKeyCache.putIfAbsent(key, publicKey);
                         }
                         break;
-                    }
-                    case "EC": // TODO
                     default:
-                        throw new JwtException("Invalid signing", HttpURLConnection.HTTP_UNAUTHORIZED);
+                        throw new JwtException("Invalid signing", HttpURLConnection.HTTP_UNAUTHORIZED, rejection);
                 }
-            } catch (final Exception e) {
-                throw new JwtException("Invalid signing", HttpURLConnection.HTTP_UNAUTHORIZED);
+            } catch (final Exception e) { // including a value which is not base64
+                throw new JwtException("Invalid signing", HttpURLConnection.HTTP_UNAUTHORIZED, rejection);
             }
+        } else if (!isKeyAlgorithm(algo, publicKey.getAlgorithm())) { // same PEM used with another kind of algorithm
+            throw new JwtException("Invalid signing", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.KEY);
         }
         return publicKey;
     }
 
-    private void verifyMac(final SecretKey key, final String signingString, final String expected) {
-        try {
-            final Mac signature = jcaProvider == null ?
-                    Mac.getInstance(key.getAlgorithm()) :
-                    Mac.getInstance(key.getAlgorithm(), jcaProvider);
-            signature.init(key);
-            signature.update(signingString.getBytes(StandardCharsets.UTF_8));
-            if (!Arrays.equals(signature.doFinal(), Base64.getUrlDecoder().decode(expected))) {
-                invalidSignature();
-            }
-        } catch (final Exception e) {
-            invalidSignature();
-        }
+    // some providers name EdDSA keys by their curve
+    private boolean isKeyAlgorithm(final String expected, final String keyAlgorithm) {
+        return expected.equals(keyAlgorithm) ||
+                ("EdDSA".equals(expected) && ("Ed25519".equals(keyAlgorithm) || "Ed448".equals(keyAlgorithm)));
     }
 
-    private void verifySignature(final PublicKey publicKey, final String signingString, final String expected,
-                                 final String algo) {
-        try {
-            final Signature signature = jcaProvider == null ?
-                    Signature.getInstance(algo) :
-                    Signature.getInstance(algo, jcaProvider);
-            signature.initVerify(publicKey);
-            signature.update(signingString.getBytes(StandardCharsets.UTF_8));
-            if (!signature.verify(Base64.getUrlDecoder().decode(expected))) {
-                invalidSignature();
-            }
-        } catch (final Exception e) {
-            invalidSignature();
-        }
+    private void invalidSignature() {
+        throw new JwtException("Invalid signature", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.SIGNATURE);
     }
 
-    private void invalidSignature() {
-        throw new JwtException("Invalid signature", HttpURLConnection.HTTP_UNAUTHORIZED);
+    private static class Verifiers {
+        private final long keysVersion;
+        private final ConcurrentMap<String, Verifier<?>> byKid = new ConcurrentHashMap<>();
+
+        private Verifiers(final long keysVersion) {
+            this.keysVersion = keysVersion;
+        }
     }
 }
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Collections.unmodifiableMap;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.enterprise.inject.Vetoed;
+
+import org.eclipse.microprofile.jwt.Claims;
+
+// Claims.valueOf throws for custom claims, this lookup does not.
+// Single name -> Claims table: the token readers and the CDI injections both rely on it
+@Vetoed
+public final class StandardClaims {
+    private static final Map<String, Claims> BY_NAME = unmodifiableMap(Stream.of(Claims.values())
+            .collect(toMap(Claims::name, identity())));
+
+    private StandardClaims() {
+        // no-op
+    }
+
+    // null for a custom claim
+    public static Claims find(final String name) {
+        return name == null ? null : BY_NAME.get(name);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+// cache of already verified tokens (signature, dates, issuer) keyed by the raw JWT
+@ApplicationScoped
+public class TokenCache {
+    @Inject
+    private GeronimoJwtAuthConfig config;
+
+    @Inject
+    private DateValidator dateValidator;
+
+    @Inject
+    private KidMapper kidMapper;
+
+    private boolean active;
+    private ExpiringCache<String, Entry> cache;
+
+    @PostConstruct
+    private void init() {
+        active = Boolean.parseBoolean(config.read("token.cache.active", "false"));
+        if (active) {
+            cache = new ExpiringCache<>(
+                    Integer.parseInt(config.read("token.cache.max-size", "10000")),
+                    Long.parseLong(config.read("token.cache.max-bytes", "16777216")));
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    // a token verified with keys which changed since (rotation, key removed from the JWKS) is verified again
+    public JsonWebToken get(final String jwt) {
+        final Entry entry = cache.get(jwt, now());
+        return entry == null || entry.keysVersion != kidMapper.getAllKeysVersion() ? null : entry.token;
+    }
+
+    // to read before the verification of the token to cache, it is cached with it
+    public long getKeysVersion() {
+        return kidMapper.getAllKeysVersion();
+    }
+
+    // exp is in seconds, the entry is dropped before the token can be considered as expired by the date validator
+    public void put(final String jwt, final JsonWebToken token, final long exp, final long keysVersion) {
+        if (keysVersion != kidMapper.getAllKeysVersion()) { // keys changed during the verification
+            return;
+        }
+        cache.put(jwt, new Entry(token, keysVersion), exp - dateValidator.getTolerance(), estimateWeight(jwt), now());
+    }
+
+    public void clear() {
+        if (active) {
+            cache.clear();
+        }
+    }
+
+    public long getHits() {
+        return active ? cache.getHits() : 0;
+    }
+
+    public long getMisses() {
+        return active ? cache.getMisses() : 0;
+    }
+
+    public long getEvictions() {
+        return active ? cache.getEvictions() : 0;
+    }
+
+    public int getSize() {
+        return active ? cache.size() : 0;
+    }
+
+    public long getWeight() {
+        return active ? cache.getWeight() : 0;
+    }
+
+    // rough estimate in bytes: the raw token, the parsed claims (~same size than the raw token) and the entry overhead
+    private long estimateWeight(final String jwt) {
+        return 2L * jwt.length() + 128;
+    }
+
+    private long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static final class Entry {
+        private final JsonWebToken token;
+        private final long keysVersion;
+
+        private Entry(final JsonWebToken token, final long keysVersion) {
+            this.token = token;
+            this.keysVersion = keysVersion;
+        }
+    }
+}
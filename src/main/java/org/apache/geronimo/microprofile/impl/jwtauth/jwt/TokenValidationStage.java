@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Collections.emptyList;
+
+import java.util.Collection;
+
+/**
+ * A check done on each token before it is accepted. Stages are CDI beans or
+ * {@link java.util.ServiceLoader} services and run sorted by cost, cheapest first,
+ * the signature being the most expensive built-in stage.
+ * A stage rejects a token throwing a {@link org.apache.geronimo.microprofile.impl.jwtauth.JwtException}.
+ * <p>
+ * Stages cheaper than {@link #SIGNATURE} see claims which are not verified yet (anyone can forge them),
+ * so a costly lookup (database, tenant service...) should declare a cost above {@link #SIGNATURE}
+ * to only be done for authentic tokens.
+ */
+public interface TokenValidationStage {
+    int SIZE = 0;
+    int TYP = 10;
+    int DATES = 100;
+    int ISSUER = 200;
+    int AUDIENCE = 300;
+    int SIGNATURE = 10000;
+
+    void validate(TokenValidationContext context);
+
+    /**
+     * @return the relative cost of this stage, by default it runs after built-in claim checks but before the signature.
+     */
+    default int getCost() {
+        return 1000;
+    }
+
+    /**
+     * @return the claims this stage reads, when claims are lazily read they are the only ones read during the validation.
+     */
+    default Collection<String> getRequiredClaims() {
+        return emptyList();
+    }
+
+    /**
+     * @return false if the result of this stage can change during the lifetime of a token (revocation, disabled tenant...).
+     * With {@code geronimo.jwt-auth.token.cache.active} a cached token is not validated again until its expiration,
+     * so a single stage returning false disables the token cache.
+     */
+    default boolean isCacheable() {
+        return true;
+    }
+}
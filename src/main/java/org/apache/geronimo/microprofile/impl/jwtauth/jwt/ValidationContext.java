@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+import javax.enterprise.inject.Vetoed;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.apache.geronimo.microprofile.impl.jwtauth.jfr.TokenDecodeEvent;
+
+// one instance per parsed token, not thread safe, decodes the token parts only when a stage needs them
+@Vetoed
+final class ValidationContext implements TokenValidationContext {
+    private final JwtParser parser;
+    private final CharSequence token;
+    private final ByteBuffer bytes; // when parsing a buffer we can pass a view of it as signing input
+    private final int firstDot;
+    private final int secondDot;
+    private final byte[][] buffers;
+
+    private JwtHeader header;
+    private JsonObject claims;
+    private JsonObject allClaims; // in lazy mode when a stage reads a claim not read for the validation
+    private byte[] payload;
+    private int payloadLength;
+    private byte[] signature;
+    private int signatureLength = -1;
+
+    ValidationContext(final JwtParser parser, final CharSequence token, final ByteBuffer bytes,
+                      final int firstDot, final int secondDot, final byte[][] buffers) {
+        this.parser = parser;
+        this.token = token;
+        this.bytes = bytes;
+        this.firstDot = firstDot;
+        this.secondDot = secondDot;
+        this.buffers = buffers;
+    }
+
+    @Override
+    public CharSequence getToken() {
+        return token;
+    }
+
+    @Override
+    public String getAlg() {
+        return header().getAlg();
+    }
+
+    @Override
+    public String getKid() {
+        return header().getKid();
+    }
+
+    @Override
+    public JsonValue getClaim(final String name) {
+        if (allClaims != null) {
+            return allClaims.get(name);
+        }
+        final JsonObject claims = claims();
+        if (!parser.isLazyClaims() || parser.isValidationClaim(name)) {
+            return claims.get(name);
+        }
+        allClaims = parser.loadJson(payload, payloadLength);
+        return allClaims.get(name);
+    }
+
+    JwtHeader header() {
+        if (header == null) {
+            header = parser.loadHeader(token, firstDot, buffers);
+        }
+        return header;
+    }
+
+    Collection<String> getIssuers() {
+        return header().getIssuers();
+    }
+
+    // all the claims if not lazy, else the ones read for the validation
+    JsonObject claims() {
+        if (claims == null) {
+            final TokenDecodeEvent event = new TokenDecodeEvent();
+            event.begin();
+            payload = JwtParser.buffer(buffers, JwtParser.PAYLOAD, Base64Url.maxDecodedLength(secondDot - firstDot - 1));
+            payloadLength = parser.decode(token, firstDot + 1, secondDot, payload);
+            claims = parser.isLazyClaims() ?
+                    parser.loadValidationClaims(payload, payloadLength) :
+                    parser.loadJson(payload, payloadLength);
+            event.complete("payload", secondDot - firstDot - 1);
+        }
+        return claims;
+    }
+
+    GeronimoJsonWebToken createToken(final String raw) {
+        final JsonObject claims = claims();
+        if (allClaims != null) {
+            return parser.createToken(raw, allClaims);
+        }
+        if (parser.isLazyClaims()) {
+            return new GeronimoJsonWebToken(raw, claims, Arrays.copyOf(payload, payloadLength), parser.getReaderFactory());
+        }
+        return parser.createToken(raw, claims);
+    }
+
+    ByteBuffer signingInput() {
+        if (bytes != null) {
+            final ByteBuffer signingInput = bytes.duplicate();
+            signingInput.position(0).limit(secondDot);
+            return signingInput;
+        }
+        return JwtParser.toSigningInput(buffers, token, secondDot);
+    }
+
+    byte[] signature() {
+        decodeSignature();
+        return signature;
+    }
+
+    int signatureLength() {
+        decodeSignature();
+        return signatureLength;
+    }
+
+    private void decodeSignature() {
+        if (signatureLength < 0) {
+            final int length = token.length();
+            signature = JwtParser.buffer(buffers, JwtParser.SIGNATURE, Base64Url.maxDecodedLength(length - secondDot - 1));
+            signatureLength = Base64Url.decode(token, secondDot + 1, length, signature);
+            if (signatureLength < 0) {
+                throw new JwtException("Invalid signature", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.SIGNATURE);
+            }
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toSet;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.Vetoed;
+import javax.inject.Inject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+import org.eclipse.microprofile.jwt.Claims;
+
+@ApplicationScoped
+public class ValidationPipeline {
+    @Inject
+    private GeronimoJwtAuthConfig config;
+
+    @Inject
+    private DateValidator dateValidator;
+
+    @Inject
+    private SignatureValidator signatureValidator;
+
+    @Inject
+    @Any
+    private Instance<TokenValidationStage> customStages;
+
+    private TokenValidationStage[] stages;
+    private StageStatistics[] statistics; // null when not active
+    private Set<String> requiredClaims;
+    private boolean cacheable;
+
+    @PostConstruct
+    private void init() {
+        final List<TokenValidationStage> all = new ArrayList<>();
+        final int maxLength = Integer.parseInt(config.read("token.max-length", "0"));
+        if (maxLength > 0) {
+            all.add(new SizeStage(maxLength));
+        }
+        all.add(new TypStage());
+        all.add(new DatesStage(dateValidator));
+        all.add(new NotBeforeStage(dateValidator));
+        all.add(new IssuerStage());
+        ofNullable(config.read("audiences", config.read("mp.jwt.verify.audiences", null)))
+                .map(s -> Stream.of(s.split(","))
+                        .map(String::trim)
+                        .filter(it -> !it.isEmpty())
+                        .collect(toSet()))
+                .filter(it -> !it.isEmpty())
+                .ifPresent(audiences -> all.add(new AudienceStage(audiences)));
+        all.add(new SignatureStage(signatureValidator));
+        customStages.forEach(all::add);
+        ServiceLoader.load(TokenValidationStage.class, Thread.currentThread().getContextClassLoader()).forEach(all::add);
+        all.sort(Comparator.comparingInt(TokenValidationStage::getCost)
+                .thenComparing(it -> it.getClass().getName())); // deterministic
+
+        stages = all.toArray(new TokenValidationStage[0]);
+        requiredClaims = all.stream()
+                .flatMap(it -> it.getRequiredClaims().stream())
+                .collect(toSet());
+        cacheable = all.stream().allMatch(TokenValidationStage::isCacheable);
+        if (Boolean.parseBoolean(config.read("validation.statistics.active", "false"))) {
+            statistics = all.stream()
+                    .map(it -> new StageStatistics(it.getClass().getName()))
+                    .toArray(StageStatistics[]::new);
+        }
+    }
+
+    void validate(final ValidationContext context) {
+        if (statistics == null) {
+            for (final TokenValidationStage stage : stages) {
+                stage.validate(context);
+            }
+            return;
+        }
+        for (int i = 0; i < stages.length; i++) {
+            final StageStatistics stats = statistics[i];
+            final long start = System.nanoTime();
+            try {
+                stages[i].validate(context);
+            } catch (final RuntimeException re) {
+                stats.rejections.increment();
+                throw re;
+            } finally {
+                stats.count.increment();
+                stats.duration.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    Set<String> getRequiredClaims() {
+        return requiredClaims;
+    }
+
+    // false if a stage must see each token, even the already validated ones
+    boolean isCacheable() {
+        return cacheable;
+    }
+
+    public List<TokenValidationStage> getStages() {
+        return unmodifiableList(asList(stages));
+    }
+
+    // stage name (class) -> statistics, empty if geronimo.jwt-auth.validation.statistics.active is not true
+    public Map<String, StageStatistics> getStatistics() {
+        final Map<String, StageStatistics> result = new LinkedHashMap<>();
+        if (statistics != null) {
+            for (final StageStatistics stats : statistics) {
+                result.put(stats.getName(), stats);
+            }
+        }
+        return result;
+    }
+
+    public static final class StageStatistics {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder rejections = new LongAdder();
+        private final LongAdder duration = new LongAdder();
+
+        private StageStatistics(final String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getRejections() {
+            return rejections.sum();
+        }
+
+        public long getTotalDurationNanos() {
+            return duration.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "StageStatistics{name='" + name + "', count=" + getCount() +
+                    ", rejections=" + getRejections() + ", duration=" + getTotalDurationNanos() + "ns}";
+        }
+    }
+
+    @Vetoed
+    private static class SizeStage implements TokenValidationStage {
+        private final int maxLength;
+
+        private SizeStage(final int maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public void validate(final TokenValidationContext context) {
+            if (context.getToken().length() > maxLength) {
+                throw new JwtException("JWT too large", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.MALFORMED);
+            }
+        }
+
+        @Override
+        public int getCost() {
+            return SIZE;
+        }
+    }
+
+    @Vetoed
+    private static class TypStage implements TokenValidationStage {
+        @Override
+        public void validate(final TokenValidationContext context) {
+            if (!ValidationContext.class.cast(context).header().isValidTyp()) {
+                throw new JwtException("Invalid typ", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.TYP);
+            }
+        }
+
+        @Override
+        public int getCost() {
+            return TYP;
+        }
+    }
+
+    @Vetoed
+    private static class DatesStage implements TokenValidationStage {
+        private final DateValidator validator;
+
+        private DatesStage(final DateValidator validator) {
+            this.validator = validator;
+        }
+
+        @Override
+        public void validate(final TokenValidationContext context) {
+            validator.checkInterval(ValidationContext.class.cast(context).claims());
+        }
+
+        @Override
+        public int getCost() {
+            return DATES;
+        }
+
+        @Override
+        public Collection<String> getRequiredClaims() {
+            return asList(Claims.exp.name(), Claims.iat.name());
+        }
+    }
+
+    @Vetoed
+    private static class NotBeforeStage implements TokenValidationStage {
+        private final DateValidator validator;
+
+        private NotBeforeStage(final DateValidator validator) {
+            this.validator = validator;
+        }
+
+        @Override
+        public void validate(final TokenValidationContext context) {
+            validator.checkNotBefore(ValidationContext.class.cast(context).claims());
+        }
+
+        @Override
+        public int getCost() {
+            return DATES + 1;
+        }
+
+        @Override
+        public Collection<String> getRequiredClaims() {
+            return singletonList(Claims.nbf.name());
+        }
+    }
+
+    @Vetoed
+    private static class IssuerStage implements TokenValidationStage {
+        @Override
+        public void validate(final TokenValidationContext context) {
+            final Collection<String> issuers = ValidationContext.class.cast(context).getIssuers();
+            if (issuers.isEmpty()) {
+                return;
+            }
+            final JsonValue iss = context.getClaim(Claims.iss.name());
+            if (!JsonString.class.isInstance(iss) || !issuers.contains(JsonString.class.cast(iss).getString())) {
+                throw new JwtException("Invalid issuer", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.ISSUER);
+            }
+        }
+
+        @Override
+        public int getCost() {
+            return ISSUER;
+        }
+
+        @Override
+        public Collection<String> getRequiredClaims() {
+            return singletonList(Claims.iss.name());
+        }
+    }
+
+    @Vetoed
+    private static class AudienceStage implements TokenValidationStage {
+        private final Set<String> audiences;
+
+        private AudienceStage(final Set<String> audiences) {
+            this.audiences = new HashSet<>(audiences);
+        }
+
+        @Override
+        public void validate(final TokenValidationContext context) {
+            final JsonValue aud = context.getClaim(Claims.aud.name());
+            if (aud != null) {
+                switch (aud.getValueType()) {
+                    case STRING:
+                        if (audiences.contains(JsonString.class.cast(aud).getString())) {
+                            return;
+                        }
+                        break;
+                    case ARRAY:
+                        for (final JsonValue value : aud.asJsonArray()) {
+                            if (JsonString.class.isInstance(value) && audiences.contains(JsonString.class.cast(value).getString())) {
+                                return;
+                            }
+                        }
+                        break;
+                    default:
+                }
+            }
+            throw new JwtException("Invalid audience", HttpURLConnection.HTTP_UNAUTHORIZED, Rejection.AUDIENCE);
+        }
+
+        @Override
+        public int getCost() {
+            return AUDIENCE;
+        }
+
+        @Override
+        public Collection<String> getRequiredClaims() {
+            return singletonList(Claims.aud.name());
+        }
+    }
+
+    @Vetoed
+    private static class SignatureStage implements TokenValidationStage {
+        private final SignatureValidator signatureValidator;
+
+        private final boolean routeByIssuer;
+
+        private SignatureStage(final SignatureValidator signatureValidator) {
+            this.signatureValidator = signatureValidator;
+            this.routeByIssuer = signatureValidator.isIssuerRouted();
+        }
+
+        @Override
+        public void validate(final TokenValidationContext context) {
+            final ValidationContext ctx = ValidationContext.class.cast(context);
+            signatureValidator.verifyWithKid(
+                    ctx.getAlg(), routeByIssuer ? issuer(ctx) : null, ctx.getKid(),
+                    ctx.signingInput(), ctx.signature(), ctx.signatureLength());
+        }
+
+        private String issuer(final ValidationContext context) {
+            final JsonValue iss = context.getClaim(Claims.iss.name());
+            return JsonString.class.isInstance(iss) ? JsonString.class.cast(iss).getString() : null;
+        }
+
+        @Override
+        public int getCost() {
+            return SIGNATURE;
+        }
+
+        @Override
+        public Collection<String> getRequiredClaims() {
+            return routeByIssuer ? singletonList(Claims.iss.name()) : emptyList();
+        }
+    }
+}
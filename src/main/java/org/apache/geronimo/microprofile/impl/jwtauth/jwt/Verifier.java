@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.enterprise.inject.Vetoed;
+
+// a key ready to verify signatures for one algorithm, JCA instances are initialized once and pooled
+@Vetoed
+abstract class Verifier<T> {
+    private final String alg;
+    private final BlockingQueue<T> pool;
+    private final int keySize;
+
+    Verifier(final String alg, final int poolSize, final Key key) {
+        this.alg = alg;
+        this.pool = poolSize > 0 ? new ArrayBlockingQueue<>(poolSize) : null;
+        this.keySize = keySize(key);
+    }
+
+    boolean matches(final String alg) {
+        return this.alg.equals(alg);
+    }
+
+    // in bits, -1 if unknown
+    int getKeySize() {
+        return keySize;
+    }
+
+    boolean verify(final ByteBuffer signingInput, final byte[] signature, final int signatureLength) throws GeneralSecurityException {
+        T instance = pool == null ? null : pool.poll();
+        if (instance == null) {
+            instance = newInstance();
+        }
+        final boolean valid = verify(instance, signingInput, signature, signatureLength);
+        if (pool != null) { // not returned to the pool on error since its state is unknown
+            pool.offer(instance);
+        }
+        return valid;
+    }
+
+    protected abstract T newInstance() throws GeneralSecurityException;
+
+    // must leave the instance ready for next verification
+    protected abstract boolean verify(T instance, ByteBuffer signingInput, byte[] signature, int signatureLength)
+            throws GeneralSecurityException;
+
+    private static int keySize(final Key key) {
+        if (RSAKey.class.isInstance(key)) {
+            return RSAKey.class.cast(key).getModulus().bitLength();
+        }
+        if (ECKey.class.isInstance(key)) {
+            return ECKey.class.cast(key).getParams().getOrder().bitLength();
+        }
+        if (SecretKey.class.isInstance(key)) {
+            final byte[] encoded = key.getEncoded();
+            return encoded == null ? -1 : encoded.length * 8;
+        }
+        switch (key.getAlgorithm()) {
+            case "Ed25519":
+                return 256;
+            case "Ed448":
+                return 456;
+            case "EdDSA": // X.509 encoding is the curve identifier then the raw key
+                final byte[] encoded = key.getEncoded();
+                return encoded == null ? -1 : (encoded.length == 44 ? 256 : 456);
+            default:
+                return -1;
+        }
+    }
+
+    @Vetoed
+    static class PublicKeyVerifier extends Verifier<Signature> {
+        private final PublicKey key;
+        private final String algorithm;
+        private final String provider;
+
+        PublicKeyVerifier(final String alg, final int poolSize, final PublicKey key, final String algorithm, final String provider) {
+            super(alg, poolSize, key);
+            this.key = key;
+            this.algorithm = algorithm;
+            this.provider = provider;
+        }
+
+        @Override
+        protected Signature newInstance() throws GeneralSecurityException {
+            final Signature signature = provider == null ? Signature.getInstance(algorithm) : Signature.getInstance(algorithm, provider);
+            signature.initVerify(key);
+            return signature;
+        }
+
+        @Override
+        protected boolean verify(final Signature instance, final ByteBuffer signingInput,
+                                 final byte[] signature, final int signatureLength) throws GeneralSecurityException {
+            instance.update(signingInput);
+            return instance.verify(signature, 0, signatureLength); // resets the instance
+        }
+    }
+
+    @Vetoed
+    // RFC 8032 signatures have a fixed length but the JDK ignores trailing bytes
+    static class EdDsaVerifier extends PublicKeyVerifier {
+        private final int signatureLength;
+
+        EdDsaVerifier(final String alg, final int poolSize, final PublicKey key, final String provider) {
+            super(alg, poolSize, key, "EdDSA", provider);
+            this.signatureLength = getKeySize() == 256 ? 64 : (getKeySize() == 456 ? 114 : -1);
+        }
+
+        @Override
+        protected boolean verify(final Signature instance, final ByteBuffer signingInput,
+                                 final byte[] signature, final int signatureLength) throws GeneralSecurityException {
+            return (this.signatureLength < 0 || this.signatureLength == signatureLength)
+                    && super.verify(instance, signingInput, signature, signatureLength);
+        }
+    }
+
+    static class EcdsaDerVerifier extends Verifier<EcdsaDerVerifier.Instance> {
+        private final PublicKey key;
+        private final String algorithm;
+        private final String provider;
+        private final int componentLength;
+
+        EcdsaDerVerifier(final String alg, final int poolSize, final PublicKey key, final String algorithm,
+                         final String provider, final int componentLength) {
+            super(alg, poolSize, key);
+            this.key = key;
+            this.algorithm = algorithm;
+            this.provider = provider;
+            this.componentLength = componentLength;
+        }
+
+        @Override
+        protected Instance newInstance() throws GeneralSecurityException {
+            final Signature signature = provider == null ? Signature.getInstance(algorithm) : Signature.getInstance(algorithm, provider);
+            signature.initVerify(key);
+            return new Instance(signature, new byte[EcdsaSignatures.maxDerLength(componentLength)]);
+        }
+
+        @Override
+        protected boolean verify(final Instance instance, final ByteBuffer signingInput,
+                                 final byte[] signature, final int signatureLength) throws GeneralSecurityException {
+            final int derLength = EcdsaSignatures.toDer(signature, signatureLength, componentLength, instance.der);
+            if (derLength < 0) {
+                return false;
+            }
+            instance.signature.update(signingInput);
+            return instance.signature.verify(instance.der, 0, derLength);
+        }
+
+        // the DER buffer goes with the signature instance so it is reused without being shared between threads
+        static class Instance {
+            private final Signature signature;
+            private final byte[] der;
+
+            private Instance(final Signature signature, final byte[] der) {
+                this.signature = signature;
+                this.der = der;
+            }
+        }
+    }
+
+    @Vetoed
+    static class MacVerifier extends Verifier<Mac> {
+        private final SecretKey key;
+        private final String provider;
+
+        MacVerifier(final String alg, final int poolSize, final SecretKey key, final String provider) {
+            super(alg, poolSize, key);
+            this.key = key;
+            this.provider = provider;
+        }
+
+        @Override
+        protected Mac newInstance() throws GeneralSecurityException {
+            final Mac mac = provider == null ? Mac.getInstance(key.getAlgorithm()) : Mac.getInstance(key.getAlgorithm(), provider);
+            mac.init(key);
+            return mac;
+        }
+
+        @Override
+        protected boolean verify(final Mac instance, final ByteBuffer signingInput,
+                                 final byte[] signature, final int signatureLength) {
+            instance.update(signingInput);
+            return constantTimeEquals(instance.doFinal(), signature, signatureLength); // doFinal resets the instance
+        }
+
+        // does not leak how many bytes match through the comparison duration
+        private static boolean constantTimeEquals(final byte[] actual, final byte[] expected, final int expectedLength) {
+            if (actual.length != expectedLength) {
+                return false;
+            }
+            int result = 0;
+            for (int i = 0; i < expectedLength; i++) {
+                result |= actual[i] ^ expected[i];
+            }
+            return result == 0;
+        }
+    }
+}
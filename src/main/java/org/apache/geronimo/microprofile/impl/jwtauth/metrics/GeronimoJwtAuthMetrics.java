@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.metrics;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+
+// when inactive (default) callers check isActive() to not even measure durations
+@ApplicationScoped
+public class GeronimoJwtAuthMetrics implements JwtAuthMetrics {
+    @Inject
+    private GeronimoJwtAuthConfig config;
+
+    private boolean active;
+    private JwtAuthMetrics delegate = new JwtAuthMetrics() {};
+
+    @PostConstruct
+    private void init() {
+        active = Boolean.parseBoolean(config.read("metrics.active", "false"));
+        if (!active) {
+            return;
+        }
+        final String type = config.read("metrics.type", "auto");
+        JwtAuthMetrics metrics = null;
+        if (!"jmx".equalsIgnoreCase(type)) {
+            metrics = newMicroprofileMetrics();
+            if (metrics == null && "microprofile".equalsIgnoreCase(type)) {
+                throw new IllegalStateException("Microprofile Metrics is not available");
+            }
+        }
+        delegate = metrics != null ? metrics : new JmxJwtAuthMetrics(config.read("metrics.jmx.name", "jwt-auth"));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (AutoCloseable.class.isInstance(delegate)) {
+            try {
+                AutoCloseable.class.cast(delegate).close();
+            } catch (final Exception e) {
+                // no-op
+            }
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public void onParse(final String alg, final long durationNanos) {
+        delegate.onParse(alg, durationNanos);
+    }
+
+    @Override
+    public void onRejection(final Rejection rejection) {
+        delegate.onRejection(rejection);
+    }
+
+    @Override
+    public void onKeyLookup(final boolean hit) {
+        delegate.onKeyLookup(hit);
+    }
+
+    @Override
+    public void onJwksFetch(final String source, final long durationNanos, final int status, final int keyCount) {
+        delegate.onJwksFetch(source, durationNanos, status, keyCount);
+    }
+
+    private JwtAuthMetrics newMicroprofileMetrics() {
+        try {
+            return new MicroprofileJwtAuthMetrics();
+        } catch (final NoClassDefFoundError | RuntimeException e) { // not available
+            return null;
+        }
+    }
+}
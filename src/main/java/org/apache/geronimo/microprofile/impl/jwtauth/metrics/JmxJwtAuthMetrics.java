@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.metrics;
+
+import static java.util.stream.Collectors.toMap;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import javax.enterprise.inject.Vetoed;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+
+@Vetoed
+class JmxJwtAuthMetrics implements JwtAuthMetrics, JwtAuthMetricsMXBean, AutoCloseable {
+    private final ConcurrentMap<String, LatencyHistogram> parseLatencies = new ConcurrentHashMap<>();
+    private final LongAdder[] rejections = new LongAdder[Rejection.values().length];
+    private final LongAdder keyLookupHits = new LongAdder();
+    private final LongAdder keyLookupMisses = new LongAdder();
+    private final LatencyHistogram jwksFetches = new LatencyHistogram();
+    private final LongAdder jwksFetchFailures = new LongAdder();
+    private final ConcurrentMap<String, JwksFetchState> jwks = new ConcurrentHashMap<>();
+    private final ObjectName name;
+
+    JmxJwtAuthMetrics(final String name) {
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] = new LongAdder();
+        }
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("org.apache.geronimo.microprofile.jwtauth:type=metrics,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) { // another application of the JVM uses the same name
+                objectName = new ObjectName(objectName + ",instance=" + System.identityHashCode(this));
+            }
+            server.registerMBean(this, objectName);
+            this.name = objectName;
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void onParse(final String alg, final long durationNanos) {
+        LatencyHistogram histogram = parseLatencies.get(alg);
+        if (histogram == null) {
+            histogram = parseLatencies.computeIfAbsent(alg, k -> new LatencyHistogram());
+        }
+        histogram.update(durationNanos);
+    }
+
+    @Override
+    public void onRejection(final Rejection rejection) {
+        rejections[rejection.ordinal()].increment();
+    }
+
+    @Override
+    public void onKeyLookup(final boolean hit) {
+        (hit ? keyLookupHits : keyLookupMisses).increment();
+    }
+
+    @Override
+    public void onJwksFetch(final String source, final long durationNanos, final int status, final int keyCount) {
+        jwksFetches.update(durationNanos);
+        if (keyCount < 0) {
+            jwksFetchFailures.increment();
+        }
+        jwks.computeIfAbsent(source, k -> new JwksFetchState()).update(status, keyCount);
+    }
+
+    @Override
+    public Map<String, Long> getParseCount() {
+        return parseStats(LatencyHistogram::getCount);
+    }
+
+    @Override
+    public Map<String, Double> getParseMean() {
+        return parseLatencies.entrySet().stream()
+                .collect(toMap(Map.Entry::getKey, e -> e.getValue().getMean() / 1000, (a, b) -> a, TreeMap::new));
+    }
+
+    @Override
+    public Map<String, Long> getParse99thPercentile() {
+        return parseStats(h -> h.getPercentile(.99) / 1000);
+    }
+
+    @Override
+    public Map<String, Long> getParseMax() {
+        return parseStats(h -> h.getMax() / 1000);
+    }
+
+    @Override
+    public Map<String, Long> getRejections() {
+        return Stream.of(Rejection.values())
+                .collect(toMap(Rejection::name, r -> rejections[r.ordinal()].sum(), (a, b) -> a, TreeMap::new));
+    }
+
+    @Override
+    public long getKeyLookupHits() {
+        return keyLookupHits.sum();
+    }
+
+    @Override
+    public long getKeyLookupMisses() {
+        return keyLookupMisses.sum();
+    }
+
+    @Override
+    public double getKeyLookupHitRatio() {
+        final long hits = keyLookupHits.sum();
+        final long total = hits + keyLookupMisses.sum();
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    @Override
+    public long getJwksFetchCount() {
+        return jwksFetches.getCount();
+    }
+
+    @Override
+    public long getJwksFetchFailures() {
+        return jwksFetchFailures.sum();
+    }
+
+    @Override
+    public double getJwksFetchMean() {
+        return jwksFetches.getMean() / 1000;
+    }
+
+    @Override
+    public Map<String, Integer> getJwksLastStatus() {
+        return jwks.entrySet().stream()
+                .collect(toMap(Map.Entry::getKey, e -> e.getValue().status, (a, b) -> a, TreeMap::new));
+    }
+
+    @Override
+    public Map<String, Integer> getJwksKeyCount() {
+        return jwks.entrySet().stream()
+                .collect(toMap(Map.Entry::getKey, e -> e.getValue().keyCount, (a, b) -> a, TreeMap::new));
+    }
+
+    @Override
+    public void close() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (final Exception e) {
+            // no-op
+        }
+    }
+
+    private Map<String, Long> parseStats(final ToLongFunction<LatencyHistogram> stat) {
+        return parseLatencies.entrySet().stream()
+                .collect(toMap(Map.Entry::getKey, e -> stat.applyAsLong(e.getValue()), (a, b) -> a, TreeMap::new));
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.metrics;
+
+import javax.enterprise.inject.Vetoed;
+
+// last download of a JWKS, -1 until known
+@Vetoed
+class JwksFetchState {
+    volatile int status = -1;
+    volatile int keyCount = -1;
+
+    void update(final int status, final int keyCount) {
+        this.status = status;
+        if (keyCount >= 0) { // a failure keeps the keys of the last successful download
+            this.keyCount = keyCount;
+        }
+    }
+}
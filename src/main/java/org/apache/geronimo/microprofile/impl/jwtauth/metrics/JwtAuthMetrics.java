@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.metrics;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+
+// implementations must not allocate for already seen algorithms/reasons, they are called for each token
+public interface JwtAuthMetrics {
+    default void onParse(final String alg, final long durationNanos) {
+        // no-op
+    }
+
+    default void onRejection(final Rejection rejection) {
+        // no-op
+    }
+
+    // lookup of the verifier (resolved key) of a kid
+    default void onKeyLookup(final boolean hit) {
+        // no-op
+    }
+
+    // source is the jwks.sources name ("default" for mp.jwt.verify.publickey.location),
+    // status is -1 if the request failed and keyCount -1 if the keys were not loaded
+    default void onJwksFetch(final String source, final long durationNanos, final int status, final int keyCount) {
+        // no-op
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.metrics;
+
+import java.util.Map;
+
+// durations are in microseconds
+public interface JwtAuthMetricsMXBean {
+    Map<String, Long> getParseCount();
+
+    Map<String, Double> getParseMean();
+
+    Map<String, Long> getParse99thPercentile();
+
+    Map<String, Long> getParseMax();
+
+    Map<String, Long> getRejections();
+
+    long getKeyLookupHits();
+
+    long getKeyLookupMisses();
+
+    double getKeyLookupHitRatio();
+
+    long getJwksFetchCount();
+
+    long getJwksFetchFailures();
+
+    double getJwksFetchMean();
+
+    // JWKS source name ("default" for mp.jwt.verify.publickey.location) -> value
+    Map<String, Integer> getJwksLastStatus();
+
+    Map<String, Integer> getJwksKeyCount();
+}
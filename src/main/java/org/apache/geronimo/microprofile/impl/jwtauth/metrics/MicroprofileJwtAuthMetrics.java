@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.geronimo.microprofile.impl.jwtauth.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.inject.Vetoed;
+import javax.enterprise.inject.spi.CDI;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+import org.eclipse.microprofile.metrics.Timer;
+
+// metrics are looked up once and kept to not create tags for each token
+@Vetoed
+class MicroprofileJwtAuthMetrics implements JwtAuthMetrics {
+    private static final String PREFIX = "geronimo.jwt-auth.";
+
+    private final MetricRegistry registry;
+    private final ConcurrentMap<String, Timer> parseTimers = new ConcurrentHashMap<>();
+    private final Counter[] rejections = new Counter[Rejection.values().length];
+    private final Counter keyLookupHits;
+    private final Counter keyLookupMisses;
+    private final Timer jwksFetches;
+    private final Counter jwksFetchFailures;
+    private final ConcurrentMap<String, JwksFetchState> jwks = new ConcurrentHashMap<>();
+
+    MicroprofileJwtAuthMetrics() { // application registry
+        this.registry = CDI.current().select(MetricRegistry.class).get();
+        for (final Rejection rejection : Rejection.values()) {
+            rejections[rejection.ordinal()] = registry.counter(PREFIX + "rejections", new Tag("reason", rejection.name()));
+        }
+        keyLookupHits = registry.counter(PREFIX + "key-lookup.hits");
+        keyLookupMisses = registry.counter(PREFIX + "key-lookup.misses");
+        registry.register(gauge("key-lookup.hit-ratio", MetricUnits.NONE), (Gauge<Double>) () -> {
+            final long hits = keyLookupHits.getCount();
+            final long total = hits + keyLookupMisses.getCount();
+            return total == 0 ? 0. : hits / (double) total;
+        });
+        jwksFetches = registry.timer(PREFIX + "jwks.fetch");
+        jwksFetchFailures = registry.counter(PREFIX + "jwks.fetch.failures");
+    }
+
+    @Override
+    public void onParse(final String alg, final long durationNanos) {
+        Timer timer = parseTimers.get(alg);
+        if (timer == null) {
+            timer = parseTimers.computeIfAbsent(alg, k -> registry.timer(PREFIX + "parse", new Tag("alg", k)));
+        }
+        timer.update(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onRejection(final Rejection rejection) {
+        rejections[rejection.ordinal()].inc();
+    }
+
+    @Override
+    public void onKeyLookup(final boolean hit) {
+        (hit ? keyLookupHits : keyLookupMisses).inc();
+    }
+
+    @Override
+    public void onJwksFetch(final String source, final long durationNanos, final int status, final int keyCount) {
+        jwksFetches.update(durationNanos, TimeUnit.NANOSECONDS);
+        if (keyCount < 0) {
+            jwksFetchFailures.inc();
+        }
+        JwksFetchState state = jwks.get(source);
+        if (state == null) { // gauges are registered the first time a source is downloaded
+            state = jwks.computeIfAbsent(source, k -> {
+                final JwksFetchState created = new JwksFetchState();
+                final Tag tag = new Tag("source", k);
+                registry.register(gauge("jwks.status", MetricUnits.NONE), (Gauge<Integer>) () -> created.status, tag);
+                registry.register(gauge("jwks.keys", MetricUnits.NONE), (Gauge<Integer>) () -> created.keyCount, tag);
+                return created;
+            });
+        }
+        state.update(status, keyCount);
+    }
+
+    private static Metadata gauge(final String name, final String unit) {
+        return Metadata.builder().withName(PREFIX + name).withType(MetricType.GAUGE).withUnit(unit).build();
+    }
+}
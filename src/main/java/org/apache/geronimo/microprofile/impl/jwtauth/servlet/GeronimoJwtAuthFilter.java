@@ -21,15 +21,27 @@ import static java.util.stream.Collectors.toSet;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import javax.enterprise.inject.spi.CDI;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -37,14 +49,18 @@ import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
 import org.apache.geronimo.microprofile.impl.jwtauth.cdi.GeronimoJwtAuthExtension;
 import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
 import org.apache.geronimo.microprofile.impl.jwtauth.jwt.JwtParser;
+import org.eclipse.microprofile.jwt.JsonWebToken;
 
 public class GeronimoJwtAuthFilter implements Filter {
+    private static final String ASYNC_PARSING = GeronimoJwtAuthFilter.class.getName() + ".async";
+
     private String headerName;
     private String cookieName;
     private String prefix;
     private JwtParser service;
     private GeronimoJwtAuthExtension extension;
     private Collection<String> publicUrls;
+    private ThreadPoolExecutor asyncExecutor;
 
     @Override
     public void init(final FilterConfig filterConfig) {
@@ -62,6 +78,15 @@ public class GeronimoJwtAuthFilter implements Filter {
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
                 .collect(toSet());
+        if (Boolean.parseBoolean(config.read("filter.async.active", "false"))) {
+            final int threads = Integer.parseInt(config.read("filter.async.threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+            asyncExecutor = new ThreadPoolExecutor(
+                    threads, threads, 1, TimeUnit.MINUTES,
+                    new ArrayBlockingQueue<>(Integer.parseInt(config.read("filter.async.queue-size", "1024"))),
+                    newThreadFactory(Boolean.parseBoolean(config.read("filter.async.virtual-threads", "false"))),
+                    new ThreadPoolExecutor.AbortPolicy());
+            asyncExecutor.allowCoreThreadTimeOut(true);
+        }
     }
 
     @Override
@@ -80,6 +105,15 @@ public class GeronimoJwtAuthFilter implements Filter {
             }
         }
 
+        // only the initial dispatch hops to the auth pool, forward/include/error dispatches must not restart the request
+        // and when there is no token there is nothing to verify (the request fails when it is accessed as in sync mode)
+        if (asyncExecutor != null && request.getDispatcherType() == DispatcherType.REQUEST && request.isAsyncSupported() &&
+                request.getAttribute(ASYNC_PARSING) == null && request.getAttribute(JsonWebToken.class.getName()) == null &&
+                hasToken(httpServletRequest)) {
+            parseAsync(httpServletRequest, HttpServletResponse.class.cast(response));
+            return;
+        }
+
         try {
             final JwtRequest req = new JwtRequest(service, headerName, cookieName, prefix, httpServletRequest);
             extension.execute(req.asTokenAccessor(), () -> chain.doFilter(req, response));
@@ -103,8 +137,105 @@ public class GeronimoJwtAuthFilter implements Filter {
         }
     }
 
+    // the token is verified in the auth pool then the request is dispatched again and the chain reuses the parsed token
+    // (or rethrows the error when the token is accessed to keep the lazy behavior of the synchronous mode)
+    private void parseAsync(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        request.setAttribute(ASYNC_PARSING, true);
+        final AsyncContext asyncContext = request.startAsync(request, response);
+        final AtomicBoolean done = new AtomicBoolean(); // the verification and the container (timeout, error) race to end it
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(final AsyncEvent event) throws IOException {
+                abort(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Token verification timed out");
+            }
+
+            @Override
+            public void onError(final AsyncEvent event) throws IOException {
+                abort(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Token verification failed");
+            }
+
+            @Override
+            public void onComplete(final AsyncEvent event) {
+                // no-op
+            }
+
+            @Override
+            public void onStartAsync(final AsyncEvent event) {
+                // no-op
+            }
+
+            private void abort(final int status, final String message) throws IOException {
+                if (!done.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    if (!response.isCommitted()) {
+                        response.sendError(status, message);
+                    }
+                } finally {
+                    asyncContext.complete();
+                }
+            }
+        });
+        try {
+            asyncExecutor.execute(() -> {
+                try {
+                    new JwtRequest(service, headerName, cookieName, prefix, request).getToken();
+                } catch (final RuntimeException re) {
+                    request.setAttribute(JwtRequest.ERROR_ATTRIBUTE, re);
+                }
+                if (done.compareAndSet(false, true)) {
+                    asyncContext.dispatch();
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            if (done.compareAndSet(false, true)) {
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many pending token verifications");
+                asyncContext.complete();
+            }
+        }
+    }
+
+    private boolean hasToken(final HttpServletRequest request) {
+        if (request.getHeader(headerName) != null ||
+                request.getAttribute("org.apache.geronimo.microprofile.impl.jwtauth.jaxrs.JAXRSRequestForwarder.header") != null) {
+            return true;
+        }
+        final Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (final Cookie cookie : cookies) {
+                if (cookieName.equalsIgnoreCase(cookie.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private ThreadFactory newThreadFactory(final boolean virtual) {
+        final String name = GeronimoJwtAuthFilter.class.getName() + "-";
+        if (virtual) { // java >= 21, not available at build time
+            try {
+                final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                return ThreadFactory.class.cast(builderType.getMethod("factory").invoke(
+                        builderType.getMethod("name", String.class, long.class).invoke(builder, name, 1L)));
+            } catch (final ReflectiveOperationException e) {
+                throw new IllegalStateException("Virtual threads are not supported by this JVM", e);
+            }
+        }
+        final AtomicInteger counter = new AtomicInteger();
+        return worker -> {
+            final Thread thread = new Thread(worker, name + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
     @Override
     public void destroy() {
-        // no-op
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdownNow();
+        }
     }
 }
@@ -38,6 +38,8 @@ import org.apache.geronimo.microprofile.impl.jwtauth.jwt.JwtParser;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
 public class JwtRequest extends HttpServletRequestWrapper implements TokenAccessor {
+    static final String ERROR_ATTRIBUTE = JwtRequest.class.getName() + ".error";
+
     private final Supplier<JsonWebToken> tokenExtractor;
     private final String headerName;
     private volatile JsonWebToken token; // cache for perf reasons
@@ -65,6 +67,11 @@ public class JwtRequest extends HttpServletRequestWrapper implements TokenAccess
                     return token;
                 }
 
+                final Object error = getAttribute(ERROR_ATTRIBUTE); // token already verified asynchronously by the filter
+                if (RuntimeException.class.isInstance(error)) {
+                    throw RuntimeException.class.cast(error);
+                }
+
                 boolean fromHeader = true;
                 String auth = String.class.cast(
                     getAttribute("org.apache.geronimo.microprofile.impl.jwtauth.jaxrs.JAXRSRequestForwarder.header"));
@@ -0,0 +1,53 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.cdi;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.Set;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.jwt.JwtParser;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.testng.annotations.Test;
+
+public class ClaimTransformerTest {
+    private final JsonWebToken token = new JwtParser().createToken("raw", read("{" +
+            "\"iss\":\"https://server.example.com\",\"exp\":1800000000,\"groups\":[\"g1\"]," +
+            "\"tenant\":\"t1\",\"level\":42,\"address\":{\"city\":\"Paris\"}}"));
+
+    @Test
+    public void customClaims() {
+        assertEquals(inject("tenant", String.class), "t1");
+        assertEquals(inject("level", Long.class), 42L);
+        assertNull(inject("missing", String.class));
+        assertNull(inject("missing", Long.class));
+        // other types get the JSON value
+        assertEquals(inject("address", JsonObject.class), token.getClaim("address"));
+        assertEquals(inject("tenant", JsonValue.class), Json.createValue("t1"));
+    }
+
+    @Test
+    public void standardClaimsAreAlreadyTyped() {
+        assertEquals(inject("iss", String.class), "https://server.example.com");
+        assertEquals(inject("exp", Long.class), 1800000000L);
+        assertSame(inject("groups", Set.class), token.getGroups());
+        assertEquals(inject("raw_token", String.class), "raw");
+    }
+
+    private Object inject(final String claim, final Type type) {
+        return GeronimoJwtAuthExtension.claimTransformer(claim, type).apply(token.getClaim(claim));
+    }
+
+    private static JsonObject read(final String json) {
+        try (final JsonReader reader = Json.createReader(new StringReader(json))) {
+            return reader.readObject();
+        }
+    }
+}
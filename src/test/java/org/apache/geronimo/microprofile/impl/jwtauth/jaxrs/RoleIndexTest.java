@@ -0,0 +1,95 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jaxrs;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.jwt.RoleIndexedToken;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.testng.annotations.Test;
+
+public class RoleIndexTest {
+    @Test
+    public void groupsAreIndexedOncePerToken() {
+        final RoleIndex index = new RoleIndex();
+        final List<String> roles = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            roles.add("role" + i);
+        }
+        final BitSet endpoint = index.compile(roles);
+        final BitSet admin = index.compile(asList("admin", "role3"));
+
+        final Set<String> groups = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            groups.add("group" + i);
+        }
+        assertFalse(index.isInRole(new Token(groups), endpoint));
+
+        groups.add("role17");
+        final Token token = new Token(groups);
+        assertTrue(index.isInRole(token, endpoint));
+        assertTrue(index.isInRole(token, endpoint));
+        assertFalse(index.isInRole(token, admin));
+        assertEquals(token.indexations, 1);
+
+        // a role added after the token was indexed
+        assertTrue(index.isInRole(token, index.compile(singletonList("group150"))));
+        assertEquals(token.indexations, 2);
+    }
+
+    @Test
+    public void noGroups() {
+        final RoleIndex index = new RoleIndex();
+        assertFalse(index.isInRole(new Token(null), index.compile(singletonList("admin"))));
+    }
+
+    private static class Token implements JsonWebToken, RoleIndexedToken {
+        private final Set<String> groups;
+        private BitSet bits;
+        private int version = -1;
+        private int indexations;
+
+        private Token(final Set<String> groups) {
+            this.groups = groups;
+        }
+
+        @Override
+        public BitSet getGroupBits(final int indexVersion, final Function<Set<String>, BitSet> indexer) {
+            if (version != indexVersion) {
+                bits = indexer.apply(groups);
+                version = indexVersion;
+                indexations++;
+            }
+            return bits;
+        }
+
+        @Override
+        public Set<String> getGroups() {
+            return groups;
+        }
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public Set<String> getClaimNames() {
+            return null;
+        }
+
+        @Override
+        public <T> T getClaim(final String claimName) {
+            return null;
+        }
+    }
+}
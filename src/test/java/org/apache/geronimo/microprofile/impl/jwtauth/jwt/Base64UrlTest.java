@@ -0,0 +1,66 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class Base64UrlTest {
+    @Test
+    public void sameBytesThanTheJdk() {
+        final Random random = new Random(1234);
+        for (int length = 0; length < 40; length++) {
+            final byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            final String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+            final String segment = "xx." + encoded + ".yy"; // decodes a slice of the token
+            assertTrue(Base64Url.maxDecodedLength(encoded.length()) >= length);
+
+            final byte[] decoded = new byte[Base64Url.maxDecodedLength(encoded.length())];
+            final int decodedLength = Base64Url.decode(segment, 3, 3 + encoded.length(), decoded);
+            assertEquals(Arrays.copyOf(decoded, decodedLength), bytes, encoded);
+        }
+    }
+
+    @Test
+    public void trailingPadding() {
+        assertEquals(decode("QQ=="), new byte[]{'A'});
+        assertEquals(decode("QUI="), new byte[]{'A', 'B'});
+    }
+
+    @Test
+    public void paddingInsideASegment() {
+        assertEquals(decodedLength("Q=Q"), -1);
+        assertEquals(decodedLength("QQ=A"), -1);
+        assertEquals(decodedLength("=QUI"), -1);
+    }
+
+    @Test
+    public void singleTrailingCharacter() {
+        assertEquals(decodedLength("Q"), -1);
+        assertEquals(decodedLength("QUJDR"), -1);
+        assertEquals(decodedLength("QUJDR==="), -1);
+    }
+
+    @Test
+    public void nonAsciiOrNonUrlAlphabet() {
+        assertEquals(decodedLength("QU\u00e9J"), -1);
+        assertEquals(decodedLength("QU\u0151J"), -1); // truncated to 8 bits it would be a Q
+        assertEquals(decodedLength("QU+J"), -1); // standard base64, not base64url
+        assertEquals(decodedLength("QU/J"), -1);
+        assertEquals(decodedLength("QU J"), -1);
+    }
+
+    private static int decodedLength(final String encoded) {
+        return Base64Url.decode(encoded, 0, encoded.length(), new byte[Base64Url.maxDecodedLength(encoded.length())]);
+    }
+
+    private static byte[] decode(final String encoded) {
+        final byte[] decoded = new byte[Base64Url.maxDecodedLength(encoded.length())];
+        return Arrays.copyOf(decoded, Base64Url.decode(encoded, 0, encoded.length(), decoded));
+    }
+}
@@ -0,0 +1,106 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Arrays.asList;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.config.GeronimoJwtAuthConfig;
+
+// wires the beans as the container does (field injection then @PostConstruct) to test them without a deployment,
+// the configuration keys are the ones the beans read (without the geronimo.jwt-auth. prefix)
+class Beans implements AutoCloseable {
+    private final Map<String, String> config;
+    private final List<TokenValidationStage> stages = new ArrayList<>();
+    private final Map<Class<?>, Object> instances = new LinkedHashMap<>();
+
+    Beans(final Map<String, String> config) {
+        this.config = new HashMap<>(config);
+    }
+
+    Beans withStages(final TokenValidationStage... stages) {
+        this.stages.addAll(asList(stages));
+        return this;
+    }
+
+    <T> T get(final Class<T> type) {
+        final Object existing = instances.get(type);
+        if (existing != null) {
+            return type.cast(existing);
+        }
+        try {
+            final Constructor<T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            final T instance = constructor.newInstance();
+            instances.put(type, instance);
+            for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                for (final Field field : current.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Inject.class)) {
+                        field.setAccessible(true);
+                        field.set(instance, lookup(field.getType()));
+                    }
+                }
+            }
+            invoke(instance, PostConstruct.class);
+            return instance;
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        instances.values().forEach(it -> invoke(it, PreDestroy.class));
+        instances.clear();
+    }
+
+    private Object lookup(final Class<?> type) {
+        if (type == GeronimoJwtAuthConfig.class) {
+            return (GeronimoJwtAuthConfig) config::getOrDefault;
+        }
+        if (type == Instance.class) { // only used for the custom validation stages
+            return Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(), new Class<?>[]{Instance.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "iterator":
+                        return stages.iterator();
+                    case "forEach":
+                        stages.forEach(Consumer.class.cast(args[0]));
+                        return null;
+                    case "isUnsatisfied":
+                        return stages.isEmpty();
+                    default:
+                        throw new UnsupportedOperationException(method.toString());
+                }
+            });
+        }
+        return get(type);
+    }
+
+    private static void invoke(final Object instance, final Class<? extends java.lang.annotation.Annotation> marker) {
+        for (Class<?> current = instance.getClass(); current != Object.class; current = current.getSuperclass()) {
+            for (final Method method : current.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(marker)) {
+                    try {
+                        method.setAccessible(true);
+                        method.invoke(instance);
+                    } catch (final Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.Signature;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+public class EcdsaSignaturesTest {
+    @Test
+    public void leadingZerosAreStripped() {
+        final byte[] jose = new byte[64];
+        jose[31] = 1; // r = 1
+        jose[63] = 0x7F; // s = 127
+        assertEquals(toDer(jose, 32), new byte[]{0x30, 6, 0x02, 1, 1, 0x02, 1, 0x7F});
+    }
+
+    @Test
+    public void highBitIsPadded() {
+        final byte[] jose = new byte[64];
+        jose[31] = (byte) 0x80; // r = 128 needs a sign byte
+        jose[32] = (byte) 0xFF; // s uses the whole component
+        final byte[] der = toDer(jose, 32);
+        assertEquals(Arrays.copyOfRange(der, 0, 8), new byte[]{0x30, 39, 0x02, 2, 0, (byte) 0x80, 0x02, 33});
+        assertEquals(der[8], 0);
+        assertEquals(Arrays.copyOfRange(der, 9, der.length), Arrays.copyOfRange(jose, 32, 64));
+    }
+
+    @Test
+    public void p521UsesLongFormLength() {
+        final byte[] jose = new byte[132];
+        Arrays.fill(jose, (byte) 0xFF);
+        final byte[] der = toDer(jose, 66);
+        assertEquals(der.length, EcdsaSignatures.maxDerLength(66));
+        assertEquals(Arrays.copyOfRange(der, 0, 6), new byte[]{0x30, (byte) 0x81, (byte) 138, 0x02, 67, 0});
+    }
+
+    @Test
+    public void wrongLength() {
+        assertEquals(EcdsaSignatures.toDer(new byte[63], 63, 32, new byte[EcdsaSignatures.maxDerLength(32)]), -1);
+        assertEquals(EcdsaSignatures.toDer(new byte[65], 65, 32, new byte[EcdsaSignatures.maxDerLength(32)]), -1);
+    }
+
+    // the JDK produces canonical DER so converting its P1363 signature must give back the same bytes,
+    // enough signatures are generated to get components with leading zeros or the high bit set
+    @Test
+    public void sameAsJdk() throws GeneralSecurityException {
+        for (final String[] spec : new String[][]{{"secp256r1", "SHA256", "32"}, {"secp384r1", "SHA384", "48"}, {"secp521r1", "SHA512", "66"}}) {
+            final KeyPair keys = Tokens.ec(spec[0]);
+            final int componentLength = Integer.parseInt(spec[2]);
+            final Signature der = Signature.getInstance(spec[1] + "withECDSA");
+            final Signature p1363 = Signature.getInstance(spec[1] + "withECDSAinP1363Format");
+            for (int i = 0; i < 64; i++) {
+                final byte[] data = ("data-" + i).getBytes(UTF_8);
+                p1363.initSign(keys.getPrivate());
+                p1363.update(data);
+                final byte[] jose = p1363.sign();
+
+                final byte[] converted = toDer(jose, componentLength);
+                der.initVerify(keys.getPublic());
+                der.update(data);
+                assertEquals(der.verify(converted), true, spec[0] + " #" + i);
+            }
+        }
+    }
+
+    private static byte[] toDer(final byte[] jose, final int componentLength) {
+        final byte[] der = new byte[EcdsaSignatures.maxDerLength(componentLength)];
+        final int length = EcdsaSignatures.toDer(jose, jose.length, componentLength, der);
+        return Arrays.copyOf(der, length);
+    }
+}
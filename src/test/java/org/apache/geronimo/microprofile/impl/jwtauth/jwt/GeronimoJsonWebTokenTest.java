@@ -0,0 +1,74 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Set;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class GeronimoJsonWebTokenTest {
+    @DataProvider
+    public static Object[][] lazy() {
+        return new Object[][]{{false}, {true}};
+    }
+
+    @Test(dataProvider = "lazy")
+    public void missingGroups(final boolean lazy) {
+        final GeronimoJsonWebToken token = token("{\"upn\":\"alice\"}", lazy);
+        assertTrue(token.getGroups().isEmpty());
+        assertSame(token.getGroups(), token.getGroups());
+        assertNull(token.getClaim("groups")); // the claim itself is still missing
+    }
+
+    @Test(dataProvider = "lazy")
+    public void arrayGroups(final boolean lazy) {
+        final GeronimoJsonWebToken token = token("{\"groups\":[\"g1\",\"g2\"]}", lazy);
+        assertEquals(token.getGroups(), Set.of("g1", "g2"));
+    }
+
+    @Test(dataProvider = "lazy")
+    public void commaSeparatedGroups(final boolean lazy) {
+        final GeronimoJsonWebToken token = token("{\"groups\":\"g1,g2\"}", lazy);
+        assertEquals(token.getGroups(), Set.of("g1", "g2"));
+        assertEquals(token.getClaim("groups"), Set.of("g1", "g2"));
+    }
+
+    @Test(dataProvider = "lazy")
+    public void groupsAreSharedAndImmutable(final boolean lazy) {
+        final GeronimoJsonWebToken token = token("{\"groups\":[\"g1\",\"g2\"]}", lazy);
+        final Set<String> groups = token.getGroups();
+        assertSame(token.getGroups(), groups);
+        assertSame(token.getClaim("groups"), groups);
+        try {
+            groups.add("admin");
+            throw new AssertionError("groups are mutable");
+        } catch (final UnsupportedOperationException expected) {
+            // the next caller must see the same groups
+        }
+        assertEquals(token.getGroups(), Set.of("g1", "g2"));
+    }
+
+    private static GeronimoJsonWebToken token(final String payload, final boolean lazy) {
+        if (lazy) { // only the validation claims were read, groups come from the payload on the first access
+            return new GeronimoJsonWebToken("raw", read("{\"exp\":1}"), payload.getBytes(UTF_8), Json.createReaderFactory(emptyMap()));
+        }
+        return new GeronimoJsonWebToken("raw", read(payload));
+    }
+
+    private static JsonObject read(final String json) {
+        try (final JsonReader reader = Json.createReader(new StringReader(json))) {
+            return reader.readObject();
+        }
+    }
+}
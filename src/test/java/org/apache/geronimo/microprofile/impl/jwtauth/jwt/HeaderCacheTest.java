@@ -0,0 +1,75 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Collections.singletonList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class HeaderCacheTest {
+    @DataProvider
+    public static Object[][] capacities() {
+        return new Object[][]{{1, 1}, {2, 2}, {3, 4}, {32, 32}, {33, 64}};
+    }
+
+    @Test
+    public void hitReturnsTheSameHeader() {
+        final HeaderCache cache = new HeaderCache(32);
+        final JwtHeader header = header("eyJhbGciOiJSUzI1NiJ9", "RS256", "k1");
+        final String jwt = "eyJhbGciOiJSUzI1NiJ9.payload.signature";
+        final int end = jwt.indexOf('.');
+        assertNull(cache.get(jwt, end, JwtHeader.hash(jwt, end)));
+
+        cache.put(header, JwtHeader.hash(jwt, end));
+        assertSame(cache.get(jwt, end, JwtHeader.hash(jwt, end)), header);
+        assertSame(cache.get(new StringBuilder(jwt), end, JwtHeader.hash(jwt, end)), header);
+    }
+
+    @Test
+    public void collidingHeadersAreNeverMixed() {
+        final HeaderCache cache = new HeaderCache(1); // a single slot, all the headers collide
+        // "Aa" and "BB" have the same String hash code
+        final JwtHeader first = header("xAa", "RS256", "k1");
+        final JwtHeader second = header("xBB", "HS256", "k2");
+        assertEquals(JwtHeader.hash("xAa", 3), JwtHeader.hash("xBB", 3));
+
+        cache.put(first, JwtHeader.hash("xAa", 3));
+        assertSame(cache.get("xAa.p.s", 3, JwtHeader.hash("xAa", 3)), first);
+        assertNull(cache.get("xBB.p.s", 3, JwtHeader.hash("xBB", 3)));
+
+        cache.put(second, JwtHeader.hash("xBB", 3)); // replaces the first one
+        final JwtHeader found = cache.get("xBB.p.s", 3, JwtHeader.hash("xBB", 3));
+        assertSame(found, second);
+        assertEquals(found.getAlg(), "HS256");
+        assertEquals(found.getKid(), "k2");
+        assertNull(cache.get("xAa.p.s", 3, JwtHeader.hash("xAa", 3)));
+
+        // a prefix of a cached header is another header
+        assertNull(cache.get("xB.p.s", 2, JwtHeader.hash("xB", 2)));
+    }
+
+    @Test(dataProvider = "capacities")
+    public void neverGrowsBeyondItsCapacity(final int size, final int capacity) {
+        final HeaderCache cache = new HeaderCache(size);
+        for (int i = 0; i < 1000; i++) {
+            final String raw = "header" + i;
+            cache.put(header(raw, "RS256", "k" + i), JwtHeader.hash(raw, raw.length()));
+        }
+        int cached = 0;
+        for (int i = 0; i < 1000; i++) {
+            final String raw = "header" + i;
+            if (cache.get(raw, raw.length(), JwtHeader.hash(raw, raw.length())) != null) {
+                cached++;
+            }
+        }
+        // one header per slot at most, most slots are used so the table is the next power of 2
+        assertTrue(cached <= capacity && cached > capacity / 2, Integer.toString(cached));
+    }
+
+    private static JwtHeader header(final String raw, final String alg, final String kid) {
+        return new JwtHeader(raw, true, alg, kid, singletonList("https://server.example.com"));
+    }
+}
@@ -0,0 +1,95 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static org.testng.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.testng.annotations.Test;
+
+public class IssuerRoutingTest {
+    private static final String IDP1 = "https://idp1.company.com";
+    private static final String IDP2 = "https://idp2.company.com";
+    private static final String LOCAL = "https://server.example.com";
+
+    private final KeyPair key1 = Tokens.rsa();
+    private final KeyPair key2 = Tokens.rsa();
+    private final KeyPair local = Tokens.rsa();
+
+    @Test
+    public void keysAreResolvedInTheJwksOfTheIssuer() {
+        try (final JwksEndpoint idp1 = new JwksEndpoint().keys(
+                Tokens.jwk("shared", (RSAPublicKey) key1.getPublic()), Tokens.jwk("only1", (RSAPublicKey) key1.getPublic()));
+             final JwksEndpoint idp2 = new JwksEndpoint().keys(Tokens.jwk("shared", (RSAPublicKey) key2.getPublic()));
+             final Beans beans = new Beans(config(idp1, idp2))) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            // same kid, each issuer uses its own key
+            assertEquals(parser.parse(Tokens.sign("RS256", "shared", Tokens.payload(IDP1, "alice"), key1.getPrivate())).getName(), "alice");
+            assertEquals(parser.parse(Tokens.sign("RS256", "shared", Tokens.payload(IDP2, "bob"), key2.getPrivate())).getName(), "bob");
+            assertEquals(Tokens.rejected(() -> parser.parse(Tokens.sign("RS256", "shared", Tokens.payload(IDP2, "mallory"), key1.getPrivate()))).getMessage(), "Invalid signature");
+
+            // the kid of another issuer is never used
+            final JwtException crossIssuer = Tokens.rejected(() -> parser.parse(Tokens.sign("RS256", "only1", Tokens.payload(IDP2, "mallory"), key1.getPrivate())));
+            assertEquals(crossIssuer.getMessage(), "Invalid signing");
+            assertEquals(crossIssuer.getRejection(), Rejection.UNKNOWN_KID);
+        }
+    }
+
+    @Test
+    public void otherIssuersUseTheDefaultKeys() {
+        try (final JwksEndpoint idp1 = new JwksEndpoint().keys(Tokens.jwk("shared", (RSAPublicKey) key1.getPublic()));
+             final JwksEndpoint idp2 = new JwksEndpoint().keys(Tokens.jwk("shared", (RSAPublicKey) key2.getPublic()));
+             final Beans beans = new Beans(config(idp1, idp2))) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            assertEquals(parser.parse(Tokens.sign("RS256", "local", Tokens.payload(LOCAL, "alice"), local.getPrivate())).getName(), "alice");
+            // a routed issuer does not fall back on the local mapping either
+            assertEquals(Tokens.rejected(() -> parser.parse(Tokens.sign("RS256", "local", Tokens.payload(IDP1, "mallory"), local.getPrivate()))).getRejection(), Rejection.UNKNOWN_KID);
+            assertEquals(Tokens.rejected(() -> parser.parse(Tokens.sign("RS256", "shared", Tokens.payload("https://unknown.company.com", "mallory"), key1.getPrivate()))).getRejection(), Rejection.ISSUER);
+        }
+    }
+
+    @Test
+    public void jwksMetricsPerSource() throws Exception {
+        try (final JwksEndpoint idp1 = new JwksEndpoint().keys(Tokens.jwk("k1", (RSAPublicKey) key1.getPublic()));
+             final JwksEndpoint idp2 = new JwksEndpoint().keys(
+                     Tokens.jwk("k1", (RSAPublicKey) key2.getPublic()), Tokens.jwk("k2", (RSAPublicKey) key2.getPublic()))) {
+            final Map<String, String> config = config(idp1, idp2);
+            config.put("metrics.active", "true");
+            config.put("metrics.type", "jmx");
+            config.put("metrics.jmx.name", "IssuerRoutingTest");
+            try (final Beans beans = new Beans(config)) {
+                beans.get(KidMapper.class).refresh();
+                final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                final ObjectName name = new ObjectName("org.apache.geronimo.microprofile.jwtauth:type=metrics,name=\"IssuerRoutingTest\"");
+                final TabularData keys = (TabularData) server.getAttribute(name, "JwksKeyCount");
+                assertEquals(keys.size(), 2);
+                assertEquals(keys.get(new Object[]{"idp1"}).get("value"), 1);
+                assertEquals(keys.get(new Object[]{"idp2"}).get("value"), 2);
+                final TabularData status = (TabularData) server.getAttribute(name, "JwksLastStatus");
+                assertEquals(status.get(new Object[]{"idp1"}).get("value"), 200);
+                assertEquals(status.get(new Object[]{"idp2"}).get("value"), 200);
+            }
+        }
+    }
+
+    private Map<String, String> config(final JwksEndpoint idp1, final JwksEndpoint idp2) {
+        final Map<String, String> config = new HashMap<>();
+        config.put("kids.key.mapping", "local=" + Tokens.pem(local.getPublic()));
+        config.put("issuer.default", LOCAL);
+        config.put("jwks.sources", "idp1, idp2");
+        config.put("jwks.sources.idp1.issuer", IDP1);
+        config.put("jwks.sources.idp1.location", idp1.getUrl());
+        config.put("jwks.sources.idp2.issuer", IDP2);
+        config.put("jwks.sources.idp2.location", idp2.getUrl());
+        return config;
+    }
+}
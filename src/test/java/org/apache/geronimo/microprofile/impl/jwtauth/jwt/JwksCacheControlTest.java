@@ -0,0 +1,48 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+
+import java.net.http.HttpHeaders;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class JwksCacheControlTest {
+    private static final long NOW = 1_700_000_000_000L; // Tue, 14 Nov 2023 22:13:20 GMT
+
+    @Test
+    public void noHeaderUsesFallback() {
+        assertEquals(nextRefresh(), 600);
+    }
+
+    @Test
+    public void maxAge() {
+        assertEquals(nextRefresh("Cache-Control", "public, max-age=300"), 300);
+        assertEquals(nextRefresh("Cache-Control", "max-age=300", "Age", "100"), 200);
+        assertEquals(nextRefresh("Cache-Control", "max-age=300", "Age", "1 day"), 300);
+    }
+
+    @Test
+    public void bounds() {
+        assertEquals(nextRefresh("Cache-Control", "no-cache"), 60);
+        assertEquals(nextRefresh("Cache-Control", "max-age=999999"), 86400);
+    }
+
+    @Test
+    public void expires() {
+        assertEquals(nextRefresh("Expires", "Tue, 14 Nov 2023 22:18:20 GMT"), 300);
+        assertEquals(nextRefresh("Expires", "Tue, 14 Nov 2023 23:13:20 GMT", "Date", "Tue, 14 Nov 2023 22:13:20 GMT"), 3600);
+        assertEquals(nextRefresh("Expires", "0"), 60);
+    }
+
+    private static long nextRefresh(final String... headers) {
+        final Map<String, List<String>> values = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            values.put(headers[i], asList(headers[i + 1]));
+        }
+        return JwksCacheControl.nextRefresh(HttpHeaders.of(values, (name, value) -> true), 600, 60, 86400, NOW);
+    }
+}
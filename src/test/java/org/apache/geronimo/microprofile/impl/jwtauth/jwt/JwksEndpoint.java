@@ -0,0 +1,75 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+
+// JWKS which can be changed during the test, unlike JwksServer it counts the downloads and can hold them
+class JwksEndpoint implements AutoCloseable {
+    private final HttpServer server;
+    private final AtomicInteger downloads = new AtomicInteger();
+    private volatile String jwks = "{\"keys\":[]}";
+    private volatile CountDownLatch hold;
+
+    JwksEndpoint() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.createContext("/jwks", exchange -> {
+            downloads.incrementAndGet();
+            final CountDownLatch latch = hold;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final byte[] body = jwks.getBytes(UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/jwks";
+    }
+
+    JwksEndpoint keys(final String... jwks) {
+        this.jwks = "{\"keys\":[" + String.join(",", jwks) + "]}";
+        return this;
+    }
+
+    // responses are blocked until the returned latch is released
+    CountDownLatch hold() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        hold = latch;
+        return latch;
+    }
+
+    int getDownloads() {
+        return downloads.get();
+    }
+
+    @Override
+    public void close() {
+        final CountDownLatch latch = hold;
+        if (latch != null) {
+            latch.countDown();
+        }
+        server.stop(0);
+    }
+}
@@ -0,0 +1,90 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Collections.singletonMap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class JwksSourceTest {
+    @Test
+    public void invalidKeyDoesNotDiscardTheOtherOnes() {
+        final KeyPair keys = Tokens.rsa();
+        try (final JwksEndpoint endpoint = new JwksEndpoint().keys(
+                "{\"kty\":\"RSA\",\"kid\":\"broken\",\"n\":\"not*base64\",\"e\":\"AQAB\"}",
+                Tokens.jwk("k", (RSAPublicKey) keys.getPublic()));
+             final Beans beans = new Beans(config(endpoint))) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            assertEquals(parser.parse(Tokens.sign("RS256", "k", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate())).getName(), "alice");
+            assertEquals(beans.get(KidMapper.class).getKeys().keySet().toString(), "[k]");
+        }
+    }
+
+    @Test
+    public void snapshotUsedUntilTheDownloadReplacesIt() throws IOException, GeneralSecurityException, InterruptedException {
+        final KeyPair old = Tokens.rsa();
+        final KeyPair current = Tokens.rsa();
+        final Path snapshot = Files.createTempDirectory("jwks").resolve("snapshot");
+        new JwksSnapshot(System.currentTimeMillis(), null, null, singletonMap("old", new JwtKey("old", "RSA", null, null, old.getPublic()))).write(snapshot);
+        try (final JwksEndpoint endpoint = new JwksEndpoint().keys(Tokens.jwk("current", (RSAPublicKey) current.getPublic()))) {
+            final CountDownLatch download = endpoint.hold();
+            final Map<String, String> config = config(endpoint);
+            config.put("jwks.snapshot.path", snapshot.toString());
+            try (final Beans beans = new Beans(config)) {
+                final KidMapper kidMapper = beans.get(KidMapper.class);
+                assertEquals(kidMapper.getKeys().keySet().toString(), "[old]");
+
+                download.countDown();
+                final long end = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+                while (!kidMapper.getKeys().containsKey("current") && System.nanoTime() < end) {
+                    Thread.sleep(5);
+                }
+                assertEquals(kidMapper.getKeys().keySet().toString(), "[current]");
+                assertEquals(beans.get(JwtParser.class).parse(
+                        Tokens.sign("RS256", "current", Tokens.payload("https://server.example.com", "alice"), current.getPrivate())).getName(), "alice");
+            }
+        }
+        assertEquals(JwksSnapshot.read(snapshot).getKeys().keySet().toString(), "[current]");
+    }
+
+    @Test
+    public void snapshotOlderThanMaxAgeIsIgnored() throws IOException {
+        final KeyPair keys = Tokens.rsa();
+        final Path snapshot = Files.createTempDirectory("jwks").resolve("snapshot");
+        final long downloadedAt = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+        new JwksSnapshot(downloadedAt, null, null, singletonMap("k", new JwtKey("k", "RSA", null, null, keys.getPublic()))).write(snapshot);
+        try (final JwksEndpoint endpoint = new JwksEndpoint()) {
+            endpoint.hold(); // only the snapshot can provide keys
+            final Map<String, String> config = config(endpoint);
+            config.put("jwks.snapshot.path", snapshot.toString());
+
+            config.put("jwks.snapshot.max-age", "3600");
+            try (final Beans beans = new Beans(config)) {
+                assertTrue(beans.get(KidMapper.class).getKeys().isEmpty());
+            }
+
+            config.put("jwks.snapshot.max-age", "10800");
+            try (final Beans beans = new Beans(config)) {
+                assertEquals(beans.get(KidMapper.class).getKeys().keySet().toString(), "[k]");
+            }
+        }
+    }
+
+    private static Map<String, String> config(final JwksEndpoint endpoint) {
+        final Map<String, String> config = new HashMap<>();
+        config.put("mp.jwt.verify.publickey.location", endpoint.getUrl());
+        config.put("issuer.default", "https://server.example.com");
+        return config;
+    }
+}
@@ -0,0 +1,262 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.HttpURLConnection;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.testng.annotations.Test;
+
+public class JwtBatchVerifierTest {
+    private final KeyPair keys = Tokens.rsa();
+
+    @Test
+    public void resultsKeepTheTokenOrder() {
+        final List<String> tokens = tokens(8);
+        try (final Beans beans = new Beans(config("256"))) {
+            // first tokens are the slowest to be verified
+            final AtomicInteger submitted = new AtomicInteger();
+            final Executor reversed = task -> {
+                final int delay = 8 - submitted.getAndIncrement();
+                new Thread(() -> {
+                    sleep(delay * 20);
+                    task.run();
+                }).start();
+            };
+            final List<JwtVerificationResult> results = beans.get(JwtBatchVerifier.class).verify(tokens, reversed);
+            assertEquals(results.stream().map(JwtVerificationResult::getRawToken).collect(toList()), tokens);
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(results.get(i).isValid(), i % 2 == 0, results.get(i).toString());
+            }
+            assertEquals(results.get(1).getError().getMessage(), "Invalid signature");
+        }
+    }
+
+    @Test
+    public void maxInFlight() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        try (final Beans beans = new Beans(config("2"))) {
+            final Executor executor = task -> pool.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(10);
+                running.decrementAndGet();
+                task.run();
+            });
+            assertEquals(beans.get(JwtBatchVerifier.class).verify(tokens(12), executor).size(), 12);
+            assertTrue(maxRunning.get() <= 2, Integer.toString(maxRunning.get()));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void publisherKeepsTheTokenOrder() throws InterruptedException {
+        final List<String> tokens = tokens(20);
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (final Beans beans = new Beans(config("4"))) {
+            final TokenPublisher publisher = new TokenPublisher(tokens);
+            final Collector collector = new Collector(Long.MAX_VALUE);
+            beans.get(JwtBatchVerifier.class).verify(publisher, pool).subscribe(collector);
+            assertTrue(collector.completed.await(1, TimeUnit.MINUTES));
+            assertEquals(collector.results.stream().map(JwtVerificationResult::getRawToken).collect(toList()), tokens);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void publisherBackpressure() throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (final Beans beans = new Beans(config("3"))) {
+            final TokenPublisher publisher = new TokenPublisher(tokens(10));
+            final Collector collector = new Collector(1);
+            beans.get(JwtBatchVerifier.class).verify(publisher, pool).subscribe(collector);
+
+            // one result consumed so one more token than the window is requested, not all of them
+            waitFor(() -> collector.results.size() == 1 && publisher.requested.get() == 4);
+            sleep(100);
+            assertEquals(collector.results.size(), 1);
+            assertEquals(publisher.requested.get(), 4);
+
+            collector.subscription.request(Long.MAX_VALUE);
+            assertTrue(collector.completed.await(1, TimeUnit.MINUTES));
+            assertEquals(collector.results.size(), 10);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void malformedAndUnverifiableTokensAreDistinct() {
+        final String jwt = Tokens.sign("RS256", "k", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate());
+        final String malformed = Tokens.b64("{\"alg\":\"RS256\",\"kid\":\"k\"}".getBytes(UTF_8)) + '.' + Tokens.b64("{".getBytes(UTF_8)) + jwt.substring(jwt.lastIndexOf('.'));
+        try (final Beans beans = new Beans(config("4"))) {
+            final JwtVerificationResult result = beans.get(JwtBatchVerifier.class).verify(malformed);
+            assertEquals(result.getError().getRejection(), Rejection.MALFORMED);
+            assertEquals(result.getError().getStatus(), HttpURLConnection.HTTP_BAD_REQUEST);
+        }
+
+        final String location;
+        try (final JwksEndpoint endpoint = new JwksEndpoint()) {
+            location = endpoint.getUrl();
+        }
+        final Map<String, String> config = new HashMap<>();
+        config.put("mp.jwt.verify.publickey.location", location); // nothing listens there anymore
+        config.put("issuer.default", "https://server.example.com");
+        try (final Beans beans = new Beans(config)) {
+            final JwtVerificationResult result = beans.get(JwtBatchVerifier.class).verify(jwt);
+            assertFalse(result.isValid());
+            assertEquals(result.getError().getRejection(), Rejection.UNAVAILABLE);
+            assertEquals(result.getError().getStatus(), HttpURLConnection.HTTP_UNAVAILABLE);
+            assertTrue(result.getError().getRejection().isTransient());
+        }
+    }
+
+    @Test
+    public void invalidRequestIsSignaledOnce() throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (final Beans beans = new Beans(config("4"))) {
+            final TokenPublisher publisher = new TokenPublisher(tokens(10));
+            final Collector collector = new Collector(2);
+            beans.get(JwtBatchVerifier.class).verify(publisher, pool).subscribe(collector);
+            waitFor(() -> collector.results.size() == 2);
+
+            collector.subscription.request(0);
+            assertTrue(collector.completed.await(1, TimeUnit.MINUTES));
+            assertTrue(collector.error instanceof IllegalArgumentException, String.valueOf(collector.error));
+            assertEquals(collector.signals.get(), 1);
+            collector.subscription.request(5);
+            sleep(50);
+            assertEquals(collector.results.size(), 2);
+            assertEquals(collector.signals.get(), 1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<String> tokens(final int count) {
+        final KeyPair other = Tokens.rsa();
+        final List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) { // odd tokens are signed with another key
+            tokens.add(Tokens.sign("RS256", "k", Tokens.payload("https://server.example.com", "user" + i), (i % 2 == 0 ? keys : other).getPrivate()));
+        }
+        return tokens;
+    }
+
+    private Map<String, String> config(final String maxInFlight) {
+        final Map<String, String> config = new HashMap<>();
+        config.put("kids.key.mapping", "k=" + Tokens.pem(keys.getPublic()));
+        config.put("issuer.default", "https://server.example.com");
+        config.put("batch.max-in-flight", maxInFlight);
+        return config;
+    }
+
+    private static void waitFor(final BooleanSupplier condition) {
+        final long end = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > end) {
+                throw new AssertionError("timeout");
+            }
+            sleep(5);
+        }
+    }
+
+    private static void sleep(final long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // emits the tokens as they are requested and tracks the upstream demand
+    private static class TokenPublisher implements Flow.Publisher<String> {
+        private final List<String> tokens;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger emitted = new AtomicInteger();
+
+        private TokenPublisher(final List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public void subscribe(final Flow.Subscriber<? super String> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public synchronized void request(final long n) {
+                    requested.addAndGet(n);
+                    for (long i = 0; i < n && emitted.get() < tokens.size(); i++) {
+                        subscriber.onNext(tokens.get(emitted.getAndIncrement()));
+                    }
+                    if (emitted.get() == tokens.size()) {
+                        emitted.incrementAndGet(); // completes only once
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    // no-op
+                }
+            });
+        }
+    }
+
+    private static class Collector implements Flow.Subscriber<JwtVerificationResult> {
+        private final long initialRequest;
+        private final List<JwtVerificationResult> results = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final AtomicInteger signals = new AtomicInteger(); // onError/onComplete calls
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        private Collector(final long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(final JwtVerificationResult item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+            signals.incrementAndGet();
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            signals.incrementAndGet();
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.JsonException;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.testng.annotations.Test;
+
+public class JwtParserTest {
+    private static final String ISSUER = "https://server.example.com";
+
+    private final KeyPair keys = Tokens.rsa();
+
+    @Test
+    public void sameTokenFromAStringACharSequenceOrAByteBuffer() {
+        try (final Beans beans = new Beans(config())) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String jwt = Tokens.sign("RS256", "k", Tokens.payload(ISSUER, "alice"), keys.getPrivate());
+            final JsonWebToken fromString = parser.parse(jwt);
+            assertToken(parser.parse(new StringBuilder(jwt)), fromString);
+
+            // the token in the middle of a bigger buffer, position and limit delimit it
+            final byte[] bytes = ("Bearer " + jwt + "\r\n").getBytes(US_ASCII);
+            final ByteBuffer heap = ByteBuffer.wrap(bytes, 7, jwt.length());
+            assertToken(parser.parse(heap), fromString);
+            assertEquals(heap.position(), 7); // not consumed
+            assertEquals(heap.limit(), 7 + jwt.length());
+
+            final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).position(7).limit(7 + jwt.length());
+            assertToken(parser.parse(direct), fromString);
+            assertToken(parser.parse(direct.slice()), fromString);
+        }
+    }
+
+    @Test
+    public void invalidBase64IsRejected() {
+        try (final Beans beans = new Beans(config())) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String jwt = Tokens.sign("RS256", "k", Tokens.payload(ISSUER, "alice"), keys.getPrivate());
+            final int payload = jwt.indexOf('.') + 1;
+            final int signature = jwt.lastIndexOf('.') + 1;
+            final String trailing = "AAA".substring(0, ((1 - (payload - 1)) % 4 + 4) % 4); // header length becomes 4n + 1
+            for (final String invalid : new String[]{
+                    jwt.substring(0, payload + 4) + '=' + jwt.substring(payload + 5), // padding inside the payload
+                    jwt.substring(0, payload) + "=" + jwt.substring(payload), // padding first
+                    jwt.substring(0, payload - 1) + trailing + jwt.substring(payload - 1), // single trailing char in the header
+                    jwt.substring(0, payload + 4) + '\u00e9' + jwt.substring(payload + 5), // non ascii
+                    jwt.substring(0, payload + 4) + (char) (jwt.charAt(payload + 4) + 0x100) + jwt.substring(payload + 5),
+                    jwt.substring(0, payload + 2) + '+' + jwt.substring(payload + 3)}) { // base64 but not base64url
+                final JwtException error = Tokens.rejected(() -> parser.parse(invalid));
+                assertEquals(error.getRejection(), Rejection.MALFORMED, invalid);
+                assertEquals(error.getStatus(), HttpURLConnection.HTTP_BAD_REQUEST, invalid);
+            }
+
+            // an undecodable signature is an invalid one
+            final String signatureWithPadding = jwt.substring(0, signature + 2) + '=' + jwt.substring(signature + 3);
+            assertEquals(Tokens.rejected(() -> parser.parse(signatureWithPadding)).getRejection(), Rejection.SIGNATURE);
+
+            // the same for bytes, a byte above 0x7F is never read as an ascii char
+            final byte[] bytes = jwt.getBytes(US_ASCII);
+            bytes[payload + 4] = (byte) (bytes[payload + 4] | 0x80);
+            assertEquals(Tokens.rejected(() -> parser.parse(ByteBuffer.wrap(bytes))).getRejection(), Rejection.MALFORMED);
+        }
+    }
+
+    @Test
+    public void malformedJsonIsARejection() throws Exception {
+        final Map<String, String> config = config();
+        config.put("metrics.active", "true");
+        config.put("metrics.type", "jmx");
+        config.put("metrics.jmx.name", "JwtParserTest");
+        config.put("rejection.cache.active", "true");
+        try (final Beans beans = new Beans(config)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String header = Tokens.b64("{\"alg\":\"RS256\",\"kid\":\"k\"}".getBytes(UTF_8));
+            for (final String jwt : new String[]{
+                    header + '.' + Tokens.b64("{\"sub\":".getBytes(UTF_8)) + ".c2ln", // truncated payload
+                    header + '.' + Tokens.b64("[]".getBytes(UTF_8)) + ".c2ln", // not an object
+                    Tokens.b64("{\"alg\"".getBytes(UTF_8)) + '.' + Tokens.b64("{}".getBytes(UTF_8)) + ".c2ln"}) { // truncated header
+                final JwtException error = Tokens.rejected(() -> parser.parse(jwt));
+                assertEquals(error.getStatus(), HttpURLConnection.HTTP_BAD_REQUEST);
+                assertEquals(error.getRejection(), Rejection.MALFORMED);
+                assertTrue(error.getCause() instanceof JsonException, String.valueOf(error.getCause()));
+                assertEquals(Tokens.rejected(() -> parser.parse(jwt)).getRejection(), Rejection.MALFORMED); // cached
+            }
+            assertEquals(beans.get(RejectionCache.class).getHits(), 3);
+
+            final TabularData rejections = (TabularData) ManagementFactory.getPlatformMBeanServer().getAttribute(
+                    new ObjectName("org.apache.geronimo.microprofile.jwtauth:type=metrics,name=\"JwtParserTest\""), "Rejections");
+            assertEquals(rejections.get(new Object[]{"MALFORMED"}).get("value"), 6L);
+        }
+    }
+
+    @Test
+    public void malformedHeaderIsRejectedAsynchronously() throws Exception {
+        try (final Beans beans = new Beans(config())) {
+            final String jwt = Tokens.b64("{\"alg\"".getBytes(UTF_8)) + '.' + Tokens.b64("{}".getBytes(UTF_8)) + ".c2ln";
+            try {
+                beans.get(JwtParser.class).parseAsync(jwt).toCompletableFuture().get(1, TimeUnit.MINUTES);
+                throw new AssertionError("malformed token accepted");
+            } catch (final ExecutionException ee) {
+                assertEquals(JwtException.class.cast(ee.getCause()).getRejection(), Rejection.MALFORMED);
+            }
+        }
+    }
+
+    private static void assertToken(final JsonWebToken actual, final JsonWebToken expected) {
+        assertEquals(actual.getRawToken(), expected.getRawToken());
+        assertEquals(actual.getName(), expected.getName());
+        assertEquals(actual.getIssuer(), expected.getIssuer());
+        assertEquals(actual.getClaimNames(), expected.getClaimNames());
+        assertEquals(actual.getExpirationTime(), expected.getExpirationTime());
+    }
+
+    private Map<String, String> config() {
+        final Map<String, String> config = new HashMap<>();
+        config.put("kids.key.mapping", "k=" + Tokens.pem(keys.getPublic()));
+        config.put("issuer.default", ISSUER);
+        return config;
+    }
+}
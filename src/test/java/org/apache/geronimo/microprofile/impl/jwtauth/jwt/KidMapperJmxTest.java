@@ -0,0 +1,70 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.testng.annotations.Test;
+
+public class KidMapperJmxTest {
+    @Test
+    public void sourcesAreExposedByName() throws Exception {
+        try (final JwksEndpoint idp1 = new JwksEndpoint().keys(Tokens.jwk("k1", (RSAPublicKey) Tokens.rsa().getPublic()));
+             final JwksEndpoint idp2 = new JwksEndpoint().keys(Tokens.jwk("k2", (RSAPublicKey) Tokens.rsa().getPublic()));
+             final Beans beans = new Beans(config(idp1, idp2))) {
+            final KidMapper mapper = beans.get(KidMapper.class);
+            mapper.refresh();
+            assertEquals(idp1.getDownloads(), 2);
+
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName("org.apache.geronimo.microprofile.jwtauth:type=kid-mapper,name=\"KidMapperJmxTest\"");
+            final TabularData sources = (TabularData) server.getAttribute(name, "Sources");
+            assertEquals(sources.size(), 2);
+            final CompositeData first = (CompositeData) sources.get(new Object[]{"idp1"}).get("value");
+            assertEquals(first.get("url"), idp1.getUrl());
+            assertEquals(first.get("refreshCount"), 2L);
+            assertTrue((Long) first.get("lastRefreshSuccess") > 0);
+            assertEquals(first.get("lastRefreshFailure"), 0L);
+            // the default JWKS attributes do not mix the sources
+            assertEquals(server.getAttribute(name, "RefreshCount"), 0L);
+
+            server.invoke(name, "refreshSource", new Object[]{"idp1"}, new String[]{String.class.getName()});
+            assertEquals(idp1.getDownloads(), 3);
+            assertEquals(idp2.getDownloads(), 2);
+            final CompositeData second = (CompositeData) ((TabularData) server.getAttribute(name, "Sources")).get(new Object[]{"idp2"}).get("value");
+            assertEquals(second.get("refreshCount"), 2L);
+
+            try {
+                server.invoke(name, "refreshSource", new Object[]{"missing"}, new String[]{String.class.getName()});
+                throw new AssertionError("unknown source refreshed");
+            } catch (final MBeanException | RuntimeException e) {
+                // expected
+            }
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                new ObjectName("org.apache.geronimo.microprofile.jwtauth:type=kid-mapper,name=\"KidMapperJmxTest\"")));
+    }
+
+    private Map<String, String> config(final JwksEndpoint idp1, final JwksEndpoint idp2) {
+        final Map<String, String> config = new HashMap<>();
+        config.put("kids.jmx.active", "true");
+        config.put("kids.jmx.name", "KidMapperJmxTest");
+        config.put("jwks.sources", "idp1, idp2");
+        config.put("jwks.sources.idp1.issuer", "https://idp1.company.com");
+        config.put("jwks.sources.idp1.location", idp1.getUrl());
+        config.put("jwks.sources.idp2.issuer", "https://idp2.company.com");
+        config.put("jwks.sources.idp2.location", idp2.getUrl());
+        return config;
+    }
+}
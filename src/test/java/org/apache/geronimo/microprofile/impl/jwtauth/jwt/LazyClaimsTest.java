@@ -0,0 +1,83 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.util.Collections.singletonList;
+import static org.testng.Assert.assertEquals;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.testng.annotations.Test;
+
+public class LazyClaimsTest {
+    private static final String CLAIMS = ",\"tenant_id\":\"t1\",\"profile\":{\"address\":{\"city\":\"Paris\"}},\"roles\":[\"a\",[\"b\"]]";
+
+    private final KeyPair keys = Tokens.rsa();
+
+    @Test
+    public void sameClaimsThanEagerParsing() {
+        final String jwt = token();
+        final JsonWebToken eager;
+        try (final Beans beans = new Beans(config(false))) {
+            eager = beans.get(JwtParser.class).parse(jwt);
+        }
+        try (final Beans beans = new Beans(config(true))) {
+            final JsonWebToken lazy = beans.get(JwtParser.class).parse(jwt);
+            assertEquals(lazy.getName(), "alice");
+            assertEquals(lazy.getGroups(), new HashSet<>(List.of("g1", "g2")));
+            assertEquals(lazy.getExpirationTime(), eager.getExpirationTime());
+            assertEquals(lazy.getClaimNames(), eager.getClaimNames());
+            for (final String name : eager.getClaimNames()) {
+                assertEquals(String.valueOf((Object) lazy.getClaim(name)), String.valueOf((Object) eager.getClaim(name)), name);
+            }
+            assertEquals(((JsonObject) lazy.getClaim("profile")).getJsonObject("address").getString("city"), "Paris");
+        }
+    }
+
+    @Test
+    public void stagesReadTheirClaims() {
+        final List<String> seen = new ArrayList<>();
+        final TokenValidationStage declared = new TokenValidationStage() {
+            @Override
+            public void validate(final TokenValidationContext context) {
+                seen.add(JsonString.class.cast(context.getClaim("tenant_id")).getString());
+            }
+
+            @Override
+            public Collection<String> getRequiredClaims() {
+                return singletonList("tenant_id");
+            }
+        };
+        final TokenValidationStage undeclared = context -> { // the whole payload is read then
+            final JsonValue profile = context.getClaim("profile");
+            seen.add(profile.asJsonObject().getJsonObject("address").getString("city"));
+        };
+        try (final Beans beans = new Beans(config(true)).withStages(declared, undeclared)) {
+            final JsonWebToken token = beans.get(JwtParser.class).parse(token());
+            assertEquals(new HashSet<>(seen), new HashSet<>(List.of("t1", "Paris")));
+            assertEquals(token.<Object>getClaim("tenant_id").toString(), "\"t1\"");
+        }
+    }
+
+    private String token() {
+        final String payload = Tokens.payload("https://server.example.com", "alice");
+        return Tokens.sign("RS256", "k", payload.substring(0, payload.length() - 1) + CLAIMS + '}', keys.getPrivate());
+    }
+
+    private Map<String, String> config(final boolean lazy) {
+        final Map<String, String> config = new HashMap<>();
+        config.put("kids.key.mapping", "k=" + Tokens.pem(keys.getPublic()));
+        config.put("issuer.default", "https://server.example.com");
+        config.put("claims.lazy", Boolean.toString(lazy));
+        return config;
+    }
+}
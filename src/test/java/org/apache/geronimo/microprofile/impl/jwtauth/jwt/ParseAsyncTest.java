@@ -0,0 +1,64 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.testng.annotations.Test;
+
+public class ParseAsyncTest {
+    private final KeyPair keys = Tokens.rsa();
+
+    @Test
+    public void resumedOnceTheJwksIsLoaded() throws InterruptedException, ExecutionException, TimeoutException {
+        try (final JwksEndpoint endpoint = new JwksEndpoint().keys(Tokens.jwk("k", (RSAPublicKey) keys.getPublic()))) {
+            final CountDownLatch download = endpoint.hold();
+            final Map<String, String> config = new HashMap<>();
+            config.put("mp.jwt.verify.publickey.location", endpoint.getUrl());
+            config.put("issuer.default", "https://server.example.com");
+            try (final Beans beans = new Beans(config)) {
+                final CompletableFuture<JsonWebToken> token = beans.get(JwtParser.class)
+                        .parseAsync(Tokens.sign("RS256", "k", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate()))
+                        .toCompletableFuture();
+                assertFalse(token.isDone()); // the caller was not blocked by the download
+
+                download.countDown();
+                assertEquals(token.get(1, TimeUnit.MINUTES).getName(), "alice");
+            }
+        }
+    }
+
+    @Test
+    public void completedWhenTheKeyIsKnown() throws InterruptedException, ExecutionException {
+        final Map<String, String> config = new HashMap<>();
+        config.put("kids.key.mapping", "k=" + Tokens.pem(keys.getPublic()));
+        config.put("issuer.default", "https://server.example.com");
+        try (final Beans beans = new Beans(config)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String jwt = Tokens.sign("RS256", "k", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate());
+            final CompletableFuture<JsonWebToken> token = parser.parseAsync(jwt).toCompletableFuture();
+            assertTrue(token.isDone());
+            assertEquals(token.get().getName(), "alice");
+
+            final CompletableFuture<JsonWebToken> invalid = parser.parseAsync(jwt.substring(0, jwt.lastIndexOf('.') + 1) + "AAAA").toCompletableFuture();
+            assertTrue(invalid.isCompletedExceptionally());
+            try {
+                invalid.get();
+            } catch (final ExecutionException ee) {
+                assertEquals(((JwtException) ee.getCause()).getMessage(), "Invalid signature");
+            }
+        }
+    }
+}
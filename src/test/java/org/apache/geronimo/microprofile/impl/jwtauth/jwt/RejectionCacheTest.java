@@ -0,0 +1,108 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static org.testng.Assert.assertEquals;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.testng.annotations.Test;
+
+public class RejectionCacheTest {
+    @Test
+    public void nonAsciiVariantDoesNotRejectTheValidToken() {
+        final KeyPair keys = Tokens.rsa();
+        final Map<String, String> config = new HashMap<>();
+        config.put("rejection.cache.active", "true");
+        config.put("kids.key.mapping", "k=" + Tokens.pem(keys.getPublic()));
+        config.put("issuer.default", "https://server.example.com");
+        try (final Beans beans = new Beans(config)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String valid = Tokens.sign("RS256", "k", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate());
+
+            // same bytes than the valid token once each char is truncated to 8 bits
+            final int last = valid.length() - 1;
+            final String variant = valid.substring(0, last) + (char) (valid.charAt(last) + 0x100);
+            Tokens.rejected(() -> parser.parse(variant));
+            Tokens.rejected(() -> parser.parse(variant));
+
+            assertEquals(parser.parse(valid).getName(), "alice");
+        }
+    }
+
+    @Test
+    public void rejectedTokenIsCached() {
+        final KeyPair keys = Tokens.rsa();
+        final Map<String, String> config = new HashMap<>();
+        config.put("rejection.cache.active", "true");
+        config.put("kids.key.mapping", "k=" + Tokens.pem(keys.getPublic()));
+        config.put("issuer.default", "https://server.example.com");
+        try (final Beans beans = new Beans(config)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String valid = Tokens.sign("RS256", "k", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate());
+            final String tampered = valid.substring(0, valid.length() - 2) + (valid.endsWith("AA") ? "BB" : "AA");
+            assertEquals(Tokens.rejected(() -> parser.parse(tampered)).getMessage(), "Invalid signature");
+            assertEquals(Tokens.rejected(() -> parser.parse(tampered)).getMessage(), "Invalid signature");
+            assertEquals(beans.get(RejectionCache.class).getHits(), 1);
+            assertEquals(parser.parse(valid).getName(), "alice");
+        }
+    }
+
+    @Test
+    public void keyMismatchIsDefinitiveButUnknownKidIsTransient() {
+        final KeyPair keys = Tokens.rsa();
+        final Map<String, String> config = new HashMap<>();
+        config.put("rejection.cache.active", "true");
+        config.put("rejection.cache.transient-ttl", "0"); // not remembered at all
+        config.put("kids.key.mapping", "broken=-----BEGIN PUBLIC KEY-----Zm9v-----END PUBLIC KEY-----");
+        config.put("issuer.default", "https://server.example.com");
+        try (final Beans beans = new Beans(config)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final RejectionCache cache = beans.get(RejectionCache.class);
+
+            final String unknownKid = Tokens.sign("RS256", "missing", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate());
+            assertEquals(Tokens.rejected(() -> parser.parse(unknownKid)).getRejection(), Rejection.UNKNOWN_KID);
+            assertEquals(Tokens.rejected(() -> parser.parse(unknownKid)).getRejection(), Rejection.UNKNOWN_KID);
+            assertEquals(cache.getHits(), 0);
+
+            // the kid is known but its key is not a valid one
+            final String mismatch = Tokens.sign("RS256", "broken", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate());
+            final JwtException error = Tokens.rejected(() -> parser.parse(mismatch));
+            assertEquals(error.getMessage(), "Invalid signing");
+            assertEquals(error.getRejection(), Rejection.KEY);
+            assertEquals(Tokens.rejected(() -> parser.parse(mismatch)).getRejection(), Rejection.KEY);
+            assertEquals(cache.getHits(), 1);
+        }
+    }
+
+    @Test
+    public void rotatedKeyDropsCachedRejections() {
+        final KeyPair old = Tokens.rsa();
+        final KeyPair rotated = Tokens.rsa();
+        try (final JwksEndpoint endpoint = new JwksEndpoint().keys(Tokens.jwk("old", (RSAPublicKey) old.getPublic()))) {
+            final Map<String, String> config = new HashMap<>();
+            config.put("rejection.cache.active", "true");
+            config.put("mp.jwt.verify.publickey.location", endpoint.getUrl());
+            config.put("public-key.default", Tokens.pem(old.getPublic()));
+            config.put("issuer.default", "https://server.example.com");
+            try (final Beans beans = new Beans(config)) {
+                final JwtParser parser = beans.get(JwtParser.class);
+                final KidMapper kidMapper = beans.get(KidMapper.class);
+                kidMapper.refresh(); // initial load done, a rejection computed while the keys change is not cached
+
+                // the new kid is not yet in the JWKS so the default key is used
+                final String jwt = Tokens.sign("RS256", "new", Tokens.payload("https://server.example.com", "alice"), rotated.getPrivate());
+                assertEquals(Tokens.rejected(() -> parser.parse(jwt)).getRejection(), Rejection.SIGNATURE);
+                assertEquals(Tokens.rejected(() -> parser.parse(jwt)).getRejection(), Rejection.SIGNATURE);
+                assertEquals(beans.get(RejectionCache.class).getHits(), 1);
+
+                endpoint.keys(Tokens.jwk("old", (RSAPublicKey) old.getPublic()), Tokens.jwk("new", (RSAPublicKey) rotated.getPublic()));
+                kidMapper.refresh();
+                assertEquals(parser.parse(jwt).getName(), "alice");
+            }
+        }
+    }
+}
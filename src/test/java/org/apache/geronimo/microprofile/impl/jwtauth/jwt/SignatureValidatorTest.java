@@ -0,0 +1,174 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class SignatureValidatorTest {
+    @DataProvider
+    public static Object[][] algorithms() {
+        return new Object[][]{
+                {"ES256", "secp256r1"},
+                {"ES384", "secp384r1"},
+                {"ES512", "secp521r1"},
+                {"EdDSA", "Ed25519"},
+                {"HS256", "secret"},
+                {"HS384", "secret"},
+                {"HS512", "secret"}
+        };
+    }
+
+    @DataProvider
+    public static Object[][] hmac() {
+        return new Object[][]{{"HS256", 32}, {"HS384", 48}, {"HS512", 64}};
+    }
+
+    @DataProvider
+    public static Object[][] ecdsa() {
+        return new Object[][]{
+                {"ES256", "SHA256withECDSA", 32, Tokens.ec("secp256r1")},
+                {"ES384", "SHA384withECDSA", 48, Tokens.ec("secp384r1")},
+                {"ES512", "SHA512withECDSA", 66, Tokens.ec("secp521r1")}
+        };
+    }
+
+    @Test(dataProvider = "algorithms")
+    public void roundTrip(final String alg, final String keyType) {
+        final TestKeys keys = keys(keyType);
+        try (final Beans beans = beans(alg, keys)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String jwt = Tokens.sign(alg, "k", Tokens.payload("https://server.example.com", "alice"), keys.signing);
+            assertEquals(parser.parse(jwt).getName(), "alice");
+            assertEquals(parser.parse(jwt).getName(), "alice"); // reused verifier
+        }
+    }
+
+    @Test(dataProvider = "algorithms")
+    public void tamperedSignature(final String alg, final String keyType) {
+        final TestKeys keys = keys(keyType);
+        try (final Beans beans = beans(alg, keys)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String jwt = Tokens.sign(alg, "k", Tokens.payload("https://server.example.com", "alice"), keys.signing);
+            final byte[] signature = signature(jwt);
+            signature[signature.length / 4] ^= 1;
+            assertEquals(Tokens.rejected(() -> parser.parse(withSignature(jwt, signature))).getMessage(), "Invalid signature");
+        }
+    }
+
+    @Test(dataProvider = "algorithms")
+    public void wrongSignatureLength(final String alg, final String keyType) {
+        final TestKeys keys = keys(keyType);
+        try (final Beans beans = beans(alg, keys)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String jwt = Tokens.sign(alg, "k", Tokens.payload("https://server.example.com", "alice"), keys.signing);
+            final byte[] signature = signature(jwt);
+            assertEquals(Tokens.rejected(() -> parser.parse(withSignature(jwt, Arrays.copyOf(signature, signature.length - 1)))).getMessage(), "Invalid signature");
+            assertEquals(Tokens.rejected(() -> parser.parse(withSignature(jwt, Arrays.copyOf(signature, signature.length + 1)))).getMessage(), "Invalid signature");
+        }
+    }
+
+    @Test(dataProvider = "algorithms")
+    public void otherKey(final String alg, final String keyType) {
+        try (final Beans beans = beans(alg, keys(keyType))) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final TestKeys other = keys(keyType);
+            final String jwt = Tokens.sign(alg, "k", Tokens.payload("https://server.example.com", "alice"), other.signing);
+            assertEquals(Tokens.rejected(() -> parser.parse(jwt)).getMessage(), "Invalid signature");
+        }
+    }
+
+    // fallback used when the provider does not support the P1363 format
+    @Test(dataProvider = "ecdsa")
+    public void derVerifier(final String alg, final String algorithm, final int componentLength, final KeyPair keys) throws GeneralSecurityException {
+        final Verifier<?> verifier = new Verifier.EcdsaDerVerifier(alg, 1, keys.getPublic(), algorithm, null, componentLength);
+        final String jwt = Tokens.sign(alg, "k", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate());
+        final byte[] signingInput = jwt.substring(0, jwt.lastIndexOf('.')).getBytes(US_ASCII);
+        final byte[] signature = signature(jwt);
+        for (int i = 0; i < 2; i++) { // pooled instance reused
+            assertTrue(verifier.verify(ByteBuffer.wrap(signingInput), signature, signature.length));
+        }
+        assertFalse(verifier.verify(ByteBuffer.wrap(signingInput), signature, signature.length - 1));
+
+        final byte[] tampered = signature.clone();
+        tampered[tampered.length - 1] ^= 1;
+        assertFalse(verifier.verify(ByteBuffer.wrap(signingInput), tampered, tampered.length));
+
+        // the signature buffer can be larger than the signature (reused buffers)
+        final byte[] larger = Arrays.copyOf(signature, signature.length + 16);
+        assertTrue(verifier.verify(ByteBuffer.wrap(signingInput), larger, signature.length));
+    }
+
+    // pool of 1 instance so the same Mac is used for each verification
+    @Test(dataProvider = "hmac")
+    public void macVerifier(final String alg, final int length) throws GeneralSecurityException {
+        final TestKeys keys = keys("secret");
+        final Verifier<?> verifier = new Verifier.MacVerifier(alg, 1, new SecretKeySpec(keys.verification.getBytes(US_ASCII), "HmacSHA" + alg.substring(2)), null);
+        final String jwt = Tokens.sign(alg, "k", Tokens.payload("https://server.example.com", "alice"), keys.signing);
+        final byte[] signingInput = jwt.substring(0, jwt.lastIndexOf('.')).getBytes(US_ASCII);
+        final byte[] signature = signature(jwt);
+        assertEquals(signature.length, length);
+
+        final byte[] tampered = signature.clone();
+        tampered[0] ^= 1;
+        for (int i = 0; i < 3; i++) { // a rejected signature does not leave a state in the pooled instance
+            assertTrue(verifier.verify(ByteBuffer.wrap(signingInput), signature, signature.length));
+            assertFalse(verifier.verify(ByteBuffer.wrap(signingInput), tampered, tampered.length));
+            assertFalse(verifier.verify(ByteBuffer.wrap(signingInput), signature, signature.length - 1));
+        }
+        // the signature buffer can be larger than the signature (reused buffers)
+        assertTrue(verifier.verify(ByteBuffer.wrap(signingInput), Arrays.copyOf(signature, signature.length + 16), signature.length));
+    }
+
+    private static TestKeys keys(final String keyType) {
+        if ("secret".equals(keyType)) { // the mapped value is the HMAC secret itself
+            final byte[] secret = new byte[64];
+            new SecureRandom().nextBytes(secret);
+            final String value = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+            return new TestKeys(new SecretKeySpec(value.getBytes(US_ASCII), "HmacSHA256"), value);
+        }
+        final KeyPair keys = "Ed25519".equals(keyType) ? Tokens.ed25519() : Tokens.ec(keyType);
+        return new TestKeys(keys.getPrivate(), Tokens.pem(keys.getPublic()));
+    }
+
+    private static Beans beans(final String alg, final TestKeys keys) {
+        final Map<String, String> config = new HashMap<>();
+        config.put("header.alg.supported", alg);
+        config.put("kids.key.mapping", "k=" + keys.verification);
+        config.put("issuer.default", "https://server.example.com");
+        return new Beans(config);
+    }
+
+    private static byte[] signature(final String jwt) {
+        return Base64.getUrlDecoder().decode(jwt.substring(jwt.lastIndexOf('.') + 1));
+    }
+
+    private static String withSignature(final String jwt, final byte[] signature) {
+        return jwt.substring(0, jwt.lastIndexOf('.') + 1) + Tokens.b64(signature);
+    }
+
+    private static class TestKeys {
+        private final Key signing;
+        private final String verification; // kids.key.mapping value
+
+        private TestKeys(final Key signing, final String verification) {
+            this.signing = signing;
+            this.verification = verification;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.testng.annotations.Test;
+
+public class TokenCacheTest {
+    @Test
+    public void rotatedKeyInvalidatesCachedTokens() {
+        final KeyPair keys = Tokens.rsa();
+        try (final JwksEndpoint endpoint = new JwksEndpoint().keys(Tokens.jwk("k", (RSAPublicKey) keys.getPublic()))) {
+            final Map<String, String> config = new HashMap<>();
+            config.put("token.cache.active", "true");
+            config.put("mp.jwt.verify.publickey.location", endpoint.getUrl());
+            config.put("issuer.default", "https://server.example.com");
+            try (final Beans beans = new Beans(config)) {
+                final JwtParser parser = beans.get(JwtParser.class);
+                final TokenCache cache = beans.get(TokenCache.class);
+                final String jwt = Tokens.sign("RS256", "k", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate());
+
+                beans.get(KidMapper.class).refresh(); // initial load done, a token verified while the keys change is not cached
+                final JsonWebToken token = parser.parse(jwt);
+                assertSame(parser.parse(jwt), token);
+                assertEquals(cache.getHits(), 1);
+
+                // the key is compromised, the provider replaces it
+                endpoint.keys(Tokens.jwk("k", (RSAPublicKey) Tokens.rsa().getPublic()));
+                beans.get(KidMapper.class).refresh();
+                assertEquals(Tokens.rejected(() -> parser.parse(jwt)).getMessage(), "Invalid signature");
+            }
+        }
+    }
+
+    @Test
+    public void unchangedJwksKeepsCachedTokens() {
+        final KeyPair keys = Tokens.rsa();
+        try (final JwksEndpoint endpoint = new JwksEndpoint().keys(Tokens.jwk("k", (RSAPublicKey) keys.getPublic()))) {
+            final Map<String, String> config = new HashMap<>();
+            config.put("token.cache.active", "true");
+            config.put("mp.jwt.verify.publickey.location", endpoint.getUrl());
+            config.put("issuer.default", "https://server.example.com");
+            try (final Beans beans = new Beans(config)) {
+                final JwtParser parser = beans.get(JwtParser.class);
+                final String jwt = Tokens.sign("RS256", "k", Tokens.payload("https://server.example.com", "alice"), keys.getPrivate());
+
+                beans.get(KidMapper.class).refresh(); // initial load done, a token verified while the keys change is not cached
+                final JsonWebToken token = parser.parse(jwt);
+                beans.get(KidMapper.class).refresh();
+                assertSame(parser.parse(jwt), token);
+            }
+        }
+    }
+}
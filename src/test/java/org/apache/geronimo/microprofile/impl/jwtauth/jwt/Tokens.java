@@ -0,0 +1,113 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+
+final class Tokens {
+    private Tokens() {
+        // no-op
+    }
+
+    static KeyPair rsa() {
+        return generate("RSA", null);
+    }
+
+    static KeyPair ec(final String curve) {
+        return generate("EC", curve);
+    }
+
+    static KeyPair ed25519() {
+        return generate("Ed25519", null);
+    }
+
+    // single line to be usable in kids.key.mapping
+    static String pem(final PublicKey key) {
+        return "-----BEGIN PUBLIC KEY-----" + Base64.getEncoder().encodeToString(key.getEncoded()) + "-----END PUBLIC KEY-----";
+    }
+
+    // RSA JWK for a JWKS served by JwksEndpoint
+    static String jwk(final String kid, final RSAPublicKey key) {
+        return "{\"kty\":\"RSA\",\"use\":\"sig\",\"kid\":\"" + kid + "\"," +
+                "\"n\":\"" + b64(unsigned(key.getModulus().toByteArray())) + "\"," +
+                "\"e\":\"" + b64(unsigned(key.getPublicExponent().toByteArray())) + "\"}";
+    }
+
+    // iss is https://server.example.com, valid for 10mn
+    static String payload(final String iss, final String upn) {
+        final long now = System.currentTimeMillis() / 1000;
+        return "{\"iss\":\"" + iss + "\",\"upn\":\"" + upn + "\",\"groups\":[\"g1\",\"g2\"],\"iat\":" + now + ",\"exp\":" + (now + 600) + "}";
+    }
+
+    static String sign(final String alg, final String kid, final String payload, final Key key) {
+        final String signingInput = b64(("{\"alg\":\"" + alg + "\",\"typ\":\"JWT\"" + (kid == null ? "" : ",\"kid\":\"" + kid + "\"") + "}").getBytes(UTF_8))
+                + '.' + b64(payload.getBytes(UTF_8));
+        return signingInput + '.' + b64(signature(alg, signingInput.getBytes(US_ASCII), key));
+    }
+
+    // the parsing must fail, returns the error
+    static JwtException rejected(final Runnable parse) {
+        try {
+            parse.run();
+        } catch (final JwtException je) {
+            return je;
+        }
+        throw new AssertionError("token accepted");
+    }
+
+    static String b64(final byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    static byte[] signature(final String alg, final byte[] data, final Key key) {
+        try {
+            if (alg.startsWith("HS")) {
+                final Mac mac = Mac.getInstance("HmacSHA" + alg.substring(2));
+                mac.init(new SecretKeySpec(key.getEncoded(), mac.getAlgorithm()));
+                return mac.doFinal(data);
+            }
+            final Signature signature = Signature.getInstance(
+                    alg.startsWith("ES") ? "SHA" + alg.substring(2) + "withECDSAinP1363Format" :
+                    "EdDSA".equals(alg) ? "Ed25519" : "SHA" + alg.substring(2) + "withRSA");
+            signature.initSign((PrivateKey) key);
+            signature.update(data);
+            return signature.sign();
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] unsigned(final byte[] bytes) {
+        return bytes.length > 1 && bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    private static KeyPair generate(final String algorithm, final String curve) {
+        try {
+            final KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm);
+            if (curve != null) {
+                generator.initialize(new ECGenParameterSpec(curve));
+            } else if ("RSA".equals(algorithm)) {
+                generator.initialize(2048);
+            }
+            return generator.generateKeyPair();
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.testng.annotations.Test;
+
+public class UnknownKidRefreshTest {
+    private static final String ISSUER = "https://server.example.com";
+
+    private final KeyPair current = Tokens.rsa();
+
+    @Test
+    public void rotatedKeyIsDownloaded() {
+        final KeyPair next = Tokens.rsa();
+        try (final JwksEndpoint endpoint = new JwksEndpoint().keys(Tokens.jwk("current", (RSAPublicKey) current.getPublic()));
+             final Beans beans = new Beans(config(endpoint, "5000"))) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            assertEquals(parser.parse(Tokens.sign("RS256", "current", Tokens.payload(ISSUER, "alice"), current.getPrivate())).getName(), "alice");
+            assertEquals(endpoint.getDownloads(), 1);
+
+            endpoint.keys(Tokens.jwk("current", (RSAPublicKey) current.getPublic()), Tokens.jwk("next", (RSAPublicKey) next.getPublic()));
+            assertEquals(parser.parse(Tokens.sign("RS256", "next", Tokens.payload(ISSUER, "bob"), next.getPrivate())).getName(), "bob");
+            assertEquals(endpoint.getDownloads(), 2);
+        }
+    }
+
+    @Test
+    public void concurrentUnknownKidsShareOneDownload() throws InterruptedException {
+        try (final JwksEndpoint endpoint = new JwksEndpoint().keys(Tokens.jwk("current", (RSAPublicKey) current.getPublic()));
+             final Beans beans = new Beans(config(endpoint, "5000"))) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            parser.parse(Tokens.sign("RS256", "current", Tokens.payload(ISSUER, "alice"), current.getPrivate()));
+
+            final CountDownLatch download = endpoint.hold();
+            final List<CompletableFuture<Rejection>> attempts = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final String jwt = Tokens.sign("RS256", "random-" + i, Tokens.payload(ISSUER, "mallory"), current.getPrivate());
+                attempts.add(CompletableFuture.supplyAsync(() -> Tokens.rejected(() -> parser.parse(jwt)).getRejection(), runnable -> new Thread(runnable).start()));
+            }
+            final long end = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+            while (endpoint.getDownloads() < 2 && System.nanoTime() < end) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(200); // let the other attempts join the download
+            download.countDown();
+            attempts.forEach(it -> assertEquals(it.join(), Rejection.UNKNOWN_KID));
+            assertEquals(endpoint.getDownloads(), 2);
+
+            // within unknown-kid.refresh.min-interval no other download
+            Tokens.rejected(() -> parser.parse(Tokens.sign("RS256", "random-8", Tokens.payload(ISSUER, "mallory"), current.getPrivate())));
+            assertEquals(endpoint.getDownloads(), 2);
+        }
+    }
+
+    @Test
+    public void slowDownloadDoesNotHoldTheRequest() {
+        try (final JwksEndpoint endpoint = new JwksEndpoint().keys(Tokens.jwk("current", (RSAPublicKey) current.getPublic()));
+             final Beans beans = new Beans(config(endpoint, "100"))) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            parser.parse(Tokens.sign("RS256", "current", Tokens.payload(ISSUER, "alice"), current.getPrivate()));
+
+            endpoint.hold();
+            final long start = System.nanoTime();
+            assertEquals(Tokens.rejected(() -> parser.parse(Tokens.sign("RS256", "random", Tokens.payload(ISSUER, "mallory"), current.getPrivate()))).getRejection(), Rejection.UNKNOWN_KID);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        }
+    }
+
+    private static Map<String, String> config(final JwksEndpoint endpoint, final String timeout) {
+        final Map<String, String> config = new HashMap<>();
+        config.put("mp.jwt.verify.publickey.location", endpoint.getUrl());
+        config.put("issuer.default", ISSUER);
+        config.put("jwks.unknown-kid.refresh.active", "true");
+        config.put("jwks.unknown-kid.refresh.timeout", timeout);
+        return config;
+    }
+}
@@ -0,0 +1,201 @@
+package org.apache.geronimo.microprofile.impl.jwtauth.jwt;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.geronimo.microprofile.impl.jwtauth.JwtException;
+import org.apache.geronimo.microprofile.impl.jwtauth.Rejection;
+import org.testng.annotations.Test;
+
+public class ValidationPipelineTest {
+    private static final String ISSUER = "https://server.example.com";
+
+    private final KeyPair keys = Tokens.rsa();
+
+    @Test
+    public void notBefore() {
+        final long now = System.currentTimeMillis() / 1000;
+        try (final Beans beans = new Beans(config())) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final JwtException error = Tokens.rejected(() -> parser.parse(token(",\"nbf\":" + (now + 600))));
+            assertEquals(error.getMessage(), "Token not yet valid");
+            assertEquals(error.getRejection(), Rejection.NOT_YET_VALID);
+
+            assertEquals(parser.parse(token(",\"nbf\":" + (now + 30))).getName(), "alice"); // date.tolerance
+            assertEquals(parser.parse(token(",\"nbf\":" + (now - 60))).getName(), "alice");
+        }
+    }
+
+    @Test
+    public void audiences() {
+        final Map<String, String> config = config();
+        config.put("audiences", "a1, a2");
+        try (final Beans beans = new Beans(config)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            assertEquals(parser.parse(token(",\"aud\":\"a2\"")).getName(), "alice");
+            assertEquals(parser.parse(token(",\"aud\":[\"other\",\"a1\"]")).getName(), "alice");
+            assertEquals(Tokens.rejected(() -> parser.parse(token(",\"aud\":\"other\""))).getRejection(), Rejection.AUDIENCE);
+            assertEquals(Tokens.rejected(() -> parser.parse(token(",\"aud\":[\"other\"]"))).getRejection(), Rejection.AUDIENCE);
+            assertEquals(Tokens.rejected(() -> parser.parse(token(""))).getRejection(), Rejection.AUDIENCE);
+        }
+    }
+
+    @Test
+    public void noAudienceCheckByDefault() {
+        try (final Beans beans = new Beans(config())) {
+            assertEquals(beans.get(JwtParser.class).parse(token(",\"aud\":\"other\"")).getName(), "alice");
+        }
+    }
+
+    @Test
+    public void stagesSortedByCost() {
+        final List<String> calls = new ArrayList<>();
+        final Stage cheap = new Stage("cheap", 50, calls);
+        final Stage standard = new Stage("standard", 1000, calls);
+        try (final Beans beans = new Beans(config()).withStages(standard, cheap)) {
+            final List<String> stages = beans.get(ValidationPipeline.class).getStages().stream()
+                    .map(it -> it instanceof Stage ? ((Stage) it).name : it.getClass().getSimpleName())
+                    .collect(toList());
+            assertEquals(stages, List.of("TypStage", "cheap", "DatesStage", "NotBeforeStage", "IssuerStage", "standard", "SignatureStage"));
+
+            beans.get(JwtParser.class).parse(token(""));
+            assertEquals(calls, List.of("cheap", "standard"));
+        }
+    }
+
+    @Test
+    public void rejectionBeforeTheSignature() {
+        final List<String> calls = new ArrayList<>();
+        final Stage failing = new Stage("failing", 50, calls) {
+            @Override
+            public void validate(final TokenValidationContext context) {
+                super.validate(context);
+                throw new JwtException("Rejected by the custom stage", HttpURLConnection.HTTP_FORBIDDEN);
+            }
+        };
+        try (final Beans beans = new Beans(config()).withStages(failing)) {
+            final String jwt = token("");
+            final String tampered = jwt.substring(0, jwt.length() - 4) + (jwt.endsWith("AAAA") ? "BBBB" : "AAAA");
+            final JwtException error = Tokens.rejected(() -> beans.get(JwtParser.class).parse(tampered));
+            assertEquals(error.getMessage(), "Rejected by the custom stage"); // the signature was not checked
+            assertEquals(error.getStatus(), HttpURLConnection.HTTP_FORBIDDEN);
+            assertEquals(error.getRejection(), Rejection.OTHER);
+            assertEquals(calls, List.of("failing"));
+        }
+    }
+
+    @Test
+    public void cachedTokensSkipTheStages() {
+        final List<String> calls = new ArrayList<>();
+        final Map<String, String> config = config();
+        config.put("token.cache.active", "true");
+        try (final Beans beans = new Beans(config).withStages(new Stage("standard", 1000, calls))) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String jwt = token("");
+            parser.parse(jwt);
+            parser.parse(jwt);
+            assertEquals(calls, List.of("standard"));
+            assertEquals(beans.get(TokenCache.class).getHits(), 1);
+        }
+    }
+
+    @Test
+    public void nonCacheableStageSeesEachToken() {
+        final List<String> calls = new ArrayList<>();
+        final Stage revocation = new Stage("revocation", TokenValidationStage.SIGNATURE + 1, calls) {
+            @Override
+            public boolean isCacheable() {
+                return false;
+            }
+        };
+        final Map<String, String> config = config();
+        config.put("token.cache.active", "true");
+        try (final Beans beans = new Beans(config).withStages(revocation)) {
+            final JwtParser parser = beans.get(JwtParser.class);
+            final String jwt = token("");
+            parser.parse(jwt);
+            parser.parse(jwt);
+            assertEquals(calls, List.of("revocation", "revocation"));
+            assertEquals(beans.get(TokenCache.class).getSize(), 0);
+        }
+    }
+
+    @Test
+    public void serviceLoaderStage() throws IOException {
+        final Path root = Files.createTempDirectory("stages");
+        final Path services = Files.createDirectories(root.resolve("META-INF/services"));
+        Files.write(services.resolve(TokenValidationStage.class.getName()), ServiceStage.class.getName().getBytes(UTF_8));
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader loader = thread.getContextClassLoader();
+        try (final URLClassLoader stages = new URLClassLoader(new URL[]{root.toUri().toURL()}, loader)) {
+            thread.setContextClassLoader(stages);
+            try (final Beans beans = new Beans(config())) {
+                assertTrue(beans.get(ValidationPipeline.class).getStages().stream().anyMatch(ServiceStage.class::isInstance));
+                final JwtParser parser = beans.get(JwtParser.class);
+                assertEquals(parser.parse(token(",\"tenant_id\":\"t1\"")).getName(), "alice");
+                assertEquals(Tokens.rejected(() -> parser.parse(token(""))).getMessage(), "No tenant");
+            }
+        } finally {
+            thread.setContextClassLoader(loader);
+        }
+    }
+
+    private String token(final String claims) {
+        final String payload = Tokens.payload(ISSUER, "alice");
+        return Tokens.sign("RS256", "k", payload.substring(0, payload.length() - 1) + claims + '}', keys.getPrivate());
+    }
+
+    private Map<String, String> config() {
+        final Map<String, String> config = new HashMap<>();
+        config.put("kids.key.mapping", "k=" + Tokens.pem(keys.getPublic()));
+        config.put("issuer.default", ISSUER);
+        config.put("date.tolerance", "60");
+        return config;
+    }
+
+    private static class Stage implements TokenValidationStage {
+        private final String name;
+        private final int cost;
+        private final List<String> calls;
+
+        private Stage(final String name, final int cost, final List<String> calls) {
+            this.name = name;
+            this.cost = cost;
+            this.calls = calls;
+        }
+
+        @Override
+        public void validate(final TokenValidationContext context) {
+            calls.add(name);
+        }
+
+        @Override
+        public int getCost() {
+            return cost;
+        }
+    }
+
+    public static class ServiceStage implements TokenValidationStage {
+        @Override
+        public void validate(final TokenValidationContext context) {
+            if (context.getClaim("tenant_id") == null) {
+                throw new JwtException("No tenant", HttpURLConnection.HTTP_UNAUTHORIZED);
+            }
+        }
+    }
+}